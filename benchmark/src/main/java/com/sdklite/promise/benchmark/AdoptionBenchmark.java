@@ -0,0 +1,92 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.Consumer;
+import com.sdklite.promise.Function;
+import com.sdklite.promise.Promise;
+import com.sdklite.promise.Scheduler;
+import com.sdklite.promise.Thenable;
+
+/**
+ * Measures the adoption of a thenable returned by a handler or passed to
+ * {@link Promise#resolve(Object)}, genuine promises are linked while foreign
+ * thenables are subscribed to.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdoptionBenchmark {
+
+    int seed;
+
+    @Benchmark
+    public Object settled_promise() throws Exception {
+        return Promise.resolve(this.seed++).then((Function<Integer, Promise<Integer>>) v -> Promise.resolve(v + 1), null, Scheduler.direct()).await();
+    }
+
+    @Benchmark
+    public Object pending_promise() throws Exception {
+        final AtomicReference<Consumer<Object>> resolve = new AtomicReference<Consumer<Object>>();
+        final Promise<Object> pending = new Promise<Object>((resolver, rejecter) -> resolve.set(resolver));
+        final Promise<Object> adopter = Promise.resolve((Object) pending);
+
+        try {
+            resolve.get().accept(this.seed++);
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        return adopter.await();
+    }
+
+    @Benchmark
+    public Integer foreign_thenable() throws Exception {
+        return Promise.resolve(new Value<Integer>(this.seed++)).await();
+    }
+
+    /**
+     * A settled thenable which is not a {@link Promise}
+     */
+    static final class Value<V> implements Thenable<V> {
+
+        final V value;
+
+        Value(final V value) {
+            this.value = value;
+        }
+
+        @Override
+        public Promise<V> then(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected) {
+            try {
+                onFulfilled.accept(this.value);
+            } catch (final Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return null;
+        }
+
+        @Override
+        public <R> Promise<R> then(final Function<V, R> onFulfilled, final Function<Throwable, R> onRejected) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
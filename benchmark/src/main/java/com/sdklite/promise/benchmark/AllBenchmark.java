@@ -0,0 +1,90 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.Consumer;
+import com.sdklite.promise.Promise;
+
+/**
+ * Measures the fan-in of {@link Promise#all(Iterable)} over plain values,
+ * settled promises, and pending promises which are settled after the
+ * aggregate promise is created.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    int width;
+
+    List<Object> values;
+
+    List<Promise<Object>> settled;
+
+    @Setup
+    public void setup() {
+        this.values = new ArrayList<Object>(this.width);
+        this.settled = new ArrayList<Promise<Object>>(this.width);
+
+        for (int i = 0; i < this.width; i++) {
+            this.values.add(Integer.valueOf(i));
+            this.settled.add(Promise.resolve((Object) Integer.valueOf(i)));
+        }
+    }
+
+    @Benchmark
+    public Object[] values() throws Exception {
+        return Promise.all(this.values).await();
+    }
+
+    @Benchmark
+    public Object[] settled() throws Exception {
+        return Promise.all(this.settled).await();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] pending() throws Exception {
+        final Consumer<Object>[] resolvers = new Consumer[this.width];
+        final List<Promise<Object>> promises = new ArrayList<Promise<Object>>(this.width);
+
+        for (int i = 0; i < this.width; i++) {
+            final int index = i;
+            promises.add(new Promise<Object>((resolve, reject) -> resolvers[index] = resolve));
+        }
+
+        final Promise<Object[]> all = Promise.all(promises);
+
+        try {
+            for (int i = 0; i < this.width; i++) {
+                resolvers[i].accept(this.values.get(i));
+            }
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        return all.await();
+    }
+
+}
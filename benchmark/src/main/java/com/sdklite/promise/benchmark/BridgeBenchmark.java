@@ -0,0 +1,55 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.Function;
+import com.sdklite.promise.Promise;
+
+/**
+ * Compares a 3-stage pipeline written with promises only against the same
+ * pipeline crossing the {@link CompletableFuture} bridge between each stage.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BridgeBenchmark {
+
+    static final Function<Integer, Integer> INCREMENT = v -> v + 1;
+
+    int seed;
+
+    @Benchmark
+    public Integer pipeline_native() throws Exception {
+        return Promise.resolve(this.seed++).then(INCREMENT).then(INCREMENT).then(INCREMENT).await();
+    }
+
+    @Benchmark
+    public Integer pipeline_bridged() throws Exception {
+        final CompletableFuture<Integer> stage1 = Promise.resolve(this.seed++).then(INCREMENT).toCompletableFuture();
+        final CompletableFuture<Integer> stage2 = stage1.thenApply(v -> v + 1);
+        return Promise.from(stage2).then(INCREMENT).toCompletableFuture().get();
+    }
+
+    @Benchmark
+    public Integer pipeline_completable_future() throws Exception {
+        return CompletableFuture.supplyAsync(() -> this.seed++).thenApply(v -> v + 1).thenApply(v -> v + 1).thenApply(v -> v + 1).get();
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.Consumer;
+import com.sdklite.promise.Promise;
+import com.sdklite.promise.Scheduler;
+
+/**
+ * Measures the throughput of {@code then} on a single shared pending promise,
+ * e.g. a configuration or an auth token that every request subscribes to.
+ * 
+ * The shared promise is settled and replaced every {@link #GENERATION}
+ * subscriptions to keep the subscriber stack bounded, compare the scores of
+ * the {@code threads_*} methods to see how the subscribe path scales.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedThenBenchmark {
+
+    static final int GENERATION = 1024;
+
+    static final Consumer<Object> NOOP = v -> {
+    };
+
+    final AtomicReference<Generation> current = new AtomicReference<Generation>();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.current.set(new Generation());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Promise<Object> threads_01() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Promise<Object> threads_02() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Promise<Object> threads_04() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Promise<Object> threads_08() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Promise<Object> threads_16() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Promise<Object> threads_32() {
+        return subscribe();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Promise<Object> threads_64() {
+        return subscribe();
+    }
+
+    private Promise<Object> subscribe() {
+        final Generation generation = this.current.get();
+        final Promise<Object> next = generation.promise.then(NOOP);
+
+        if (GENERATION == generation.subscribers.incrementAndGet()) {
+            this.current.compareAndSet(generation, new Generation());
+            generation.settle();
+        }
+
+        return next;
+    }
+
+    static final class Generation {
+
+        final AtomicInteger subscribers = new AtomicInteger();
+        final AtomicReference<Consumer<Object>> resolve = new AtomicReference<Consumer<Object>>();
+        final Promise<Object> promise = new Promise<Object>((resolve, reject) -> this.resolve.set(resolve), Scheduler.direct());
+
+        void settle() {
+            try {
+                this.resolve.get().accept(this);
+            } catch (final Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+}
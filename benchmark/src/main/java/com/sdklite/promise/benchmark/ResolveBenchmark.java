@@ -0,0 +1,62 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.IntPromise;
+import com.sdklite.promise.Promise;
+
+/**
+ * Measures the creation cost of settled promises, run with {@code -prof gc}
+ * to see the allocation per operation.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveBenchmark {
+
+    Object value = new Object();
+
+    int seed = 1 << 16;
+
+    @Benchmark
+    public Promise<Object> resolve_null() {
+        return Promise.resolve();
+    }
+
+    @Benchmark
+    public Promise<Object> resolve_object() {
+        return Promise.resolve(this.value);
+    }
+
+    @Benchmark
+    public Promise<Integer> resolve_boxed() {
+        return Promise.resolve(this.seed++);
+    }
+
+    @Benchmark
+    public IntPromise resolve_int() {
+        return IntPromise.resolve(this.seed++);
+    }
+
+    @Benchmark
+    public Promise<Object> reject() {
+        return Promise.reject(new IllegalStateException());
+    }
+
+}
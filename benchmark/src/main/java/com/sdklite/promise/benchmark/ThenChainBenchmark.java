@@ -0,0 +1,85 @@
+package com.sdklite.promise.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sdklite.promise.Consumer;
+import com.sdklite.promise.Function;
+import com.sdklite.promise.Promise;
+import com.sdklite.promise.Scheduler;
+
+/**
+ * Measures a chain of {@code then} calls appended to an already settled
+ * promise, and to a pending promise which is settled after the whole chain
+ * is built, with the default scheduler and the direct scheduler.
+ * 
+ * @author johnsonlee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThenChainBenchmark {
+
+    static final Function<Integer, Integer> INCREMENT = v -> v + 1;
+
+    @Param({ "1", "10", "1000" })
+    int depth;
+
+    @Param({ "default", "direct" })
+    String scheduler;
+
+    Scheduler executor;
+
+    int seed;
+
+    @Setup
+    public void setup() {
+        this.executor = "direct".equals(this.scheduler) ? Scheduler.direct() : null;
+    }
+
+    @Benchmark
+    public Integer settled() throws Exception {
+        Promise<Integer> promise = Promise.resolve(this.seed++).withScheduler(this.executor);
+
+        for (int i = 0; i < this.depth; i++) {
+            promise = promise.then(INCREMENT);
+        }
+
+        return promise.await();
+    }
+
+    @Benchmark
+    public Integer pending() throws Exception {
+        final AtomicReference<Consumer<Integer>> resolve = new AtomicReference<Consumer<Integer>>();
+        Promise<Integer> promise = new Promise<Integer>((resolver, rejecter) -> resolve.set(resolver), this.executor);
+
+        for (int i = 0; i < this.depth; i++) {
+            promise = promise.then(INCREMENT);
+        }
+
+        try {
+            resolve.get().accept(this.seed++);
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        return promise.await();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber which settles a promise with the result of the promise it
+ * adopted, for an adopted promise which can't be linked as it's observed by
+ * other consumers
+ */
+final class Adoption<V> extends Subscriber<V, Void> {
+
+    final Promise<V> promise;
+
+    public Adoption(final Promise<V> promise) {
+        this.promise = promise;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.promise._resolve(value);
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.promise._reject(reason);
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.promise.isCancelled();
+    }
+
+}
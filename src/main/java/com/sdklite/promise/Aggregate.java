@@ -0,0 +1,226 @@
+package com.sdklite.promise;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The state shared by the inputs of {@link Promise#all(Class, Iterable)},
+ * {@link Promise#allSettled(Iterable)}, {@link Promise#any(Iterable)} and
+ * {@link Promise#race(Iterable)}. Each pending input is observed by a single
+ * subscriber notified on the settling thread, already settled inputs and
+ * plain values are consumed inline while iterating.
+ *
+ * @author johnsonlee
+ *
+ */
+final class Aggregate<T> {
+
+    static final int ALL = 0;
+    static final int ALL_SETTLED = 1;
+    static final int ANY = 2;
+    static final int RACE = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Aggregate> PENDING = AtomicIntegerFieldUpdater.newUpdater(Aggregate.class, "pending");
+
+    /**
+     * Returns the elements of the specified iterable in a single pass
+     */
+    static Object[] toArray(final Iterable<?> iterable) {
+        if (iterable instanceof Collection) {
+            return ((Collection<?>) iterable).toArray();
+        }
+
+        final ArrayList<Object> list = new ArrayList<Object>();
+        for (final Object o : iterable) {
+            list.add(o);
+        }
+        return list.toArray();
+    }
+
+    final int mode;
+
+    final Promise<T> promise;
+
+    final boolean cancel;
+
+    /**
+     * The inputs, released once the aggregate promise is settled, volatile as
+     * it's written by the calling thread and read by the settling ones
+     */
+    volatile Object[] inputs;
+
+    /**
+     * The values of {@link #ALL}, the outcomes of {@link #ALL_SETTLED}, the
+     * reasons of {@link #ANY}, or the inputs of {@link #RACE}, released once
+     * the aggregate promise is settled
+     */
+    volatile Object[] results;
+
+    volatile int pending;
+
+    Aggregate(final int mode, final Promise<T> promise, final Object[] inputs, final Object[] results, final boolean cancel) {
+        this.mode = mode;
+        this.promise = promise;
+        this.inputs = inputs;
+        this.results = results;
+        this.cancel = cancel;
+        this.pending = inputs.length;
+
+        if (cancel) {
+            promise.onCancel(this::settle);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void start() {
+        final Object[] inputs = this.inputs;
+
+        for (int i = 0; i < inputs.length && null != this.inputs; i++) {
+            final Object input = inputs[i];
+
+            if (input instanceof Promise) {
+                ((Promise<Object>) input).subscribe(new Input(i));
+            } else if (input instanceof Thenable) {
+                final Promise<Object> promise = Promise.resolve((Thenable<Object>) input);
+                inputs[i] = promise;
+                promise.subscribe(new Input(i));
+            } else {
+                onFulfilled(i, input);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void onFulfilled(final int index, final Object value) {
+        final Object[] results = this.results;
+        if (null == results) {
+            return;
+        }
+
+        switch (this.mode) {
+        case ALL:
+            try {
+                results[index] = value;
+            } catch (final ArrayStoreException e) {
+                if (settle()) {
+                    this.promise._reject(e);
+                }
+                return;
+            }
+
+            if (0 == PENDING.decrementAndGet(this) && settle()) {
+                this.promise._resolve((T) results);
+            }
+            break;
+        case ALL_SETTLED:
+            results[index] = new Outcome<Object>(true, value, null);
+
+            if (0 == PENDING.decrementAndGet(this) && settle()) {
+                this.promise._resolve((T) results);
+            }
+            break;
+        default:
+            if (settle()) {
+                this.promise._resolve((T) value);
+            }
+            break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void onRejected(final int index, final Throwable reason) {
+        final Object[] results = this.results;
+        if (null == results) {
+            return;
+        }
+
+        switch (this.mode) {
+        case ALL_SETTLED:
+            results[index] = new Outcome<Object>(false, null, reason);
+
+            if (0 == PENDING.decrementAndGet(this) && settle()) {
+                this.promise._resolve((T) results);
+            }
+            break;
+        case ANY:
+            results[index] = reason;
+
+            if (0 == PENDING.decrementAndGet(this) && settle()) {
+                this.promise._reject(new AggregateException("All promises were rejected", (Throwable[]) results));
+            }
+            break;
+        default:
+            if (settle()) {
+                this.promise._reject(reason);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Stops tracking the inputs, and drops the interest in the pending ones if
+     * requested, an input shared with other consumers is left pending
+     * 
+     * @return true if this call stops tracking
+     */
+    private boolean settle() {
+        final Object[] inputs;
+
+        synchronized (this) {
+            if (null == (inputs = this.inputs)) {
+                return false;
+            }
+
+            this.inputs = null;
+            this.results = null;
+        }
+
+        if (this.cancel) {
+            release(inputs);
+        }
+
+        return true;
+    }
+
+    private static void release(final Object[] inputs) {
+        for (final Object input : inputs) {
+            if (input instanceof Promise) {
+                // the input is cancelled once none of its subscribers is
+                // interested, as this one isn't any more
+                Promise.release((Promise<?>) input);
+            }
+        }
+    }
+
+    final class Input extends Subscriber<Object, Void> {
+
+        final int index;
+
+        Input(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        public void resolve(final Object value) {
+            onFulfilled(this.index, value);
+        }
+
+        @Override
+        public void reject(final Throwable reason) {
+            onRejected(this.index, reason);
+        }
+
+        @Override
+        boolean isCancelled() {
+            return null == Aggregate.this.inputs;
+        }
+    }
+
+}
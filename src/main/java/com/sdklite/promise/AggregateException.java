@@ -0,0 +1,33 @@
+package com.sdklite.promise;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The exception which wraps the reasons of all rejected promises passed to
+ * {@link Promise#any(Iterable)}
+ * 
+ * @author johnsonlee
+ */
+public class AggregateException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Throwable> errors;
+
+    public AggregateException(final String message, final Throwable... errors) {
+        super(message, errors.length > 0 ? errors[0] : null);
+        this.errors = Collections.unmodifiableList(Arrays.asList(errors));
+    }
+
+    /**
+     * Returns the reasons of the rejected promises in the order of the input
+     * 
+     * @return the reasons of the rejected promises
+     */
+    public List<Throwable> getErrors() {
+        return this.errors;
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.sdklite.promise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the individual loads of keys into batches, the keys loaded while
+ * a batch is open are de-duplicated and loaded by a single call of the batch
+ * function, then the results are fanned out to the promise of each key.
+ *
+ * <p>
+ * By default, a batch is dispatched once the callbacks being executed on the
+ * current thread run out, so the loads issued by the callbacks of the same
+ * drain are batched together; with a window, a batch is dispatched after the
+ * window elapses since its first key; either way, a batch is dispatched as
+ * soon as it reaches the maximum size.
+ * </p>
+ *
+ * <p>
+ * The loads issued from a thread which isn't executing the callbacks, such as
+ * the main thread, have no drain to wait for, so the batch is dispatched by
+ * the timer after at least a millisecond instead, call {@link #flush()} after
+ * issuing them to dispatch the batch right away with a deterministic size.
+ * </p>
+ *
+ * <pre>
+ * final BatchLoader&lt;String, User&gt; users = BatchLoader.&lt;String, User&gt; builder()
+ *         .maxBatchSize(100)
+ *         .build(ids -&gt; api.fetchUsers(ids));
+ *
+ * users.load("johnsonlee").then(user -&gt; ...);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ * @param <K>
+ *            The type of key
+ * @param <V>
+ *            The type of value
+ */
+public final class BatchLoader<K, V> {
+
+    /**
+     * Returns a builder of {@link BatchLoader}
+     *
+     * @return a new builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<K, V>();
+    }
+
+    private final Function<List<K>, ? extends Thenable<Map<K, V>>> function;
+
+    private final int maxBatchSize;
+
+    private final long window;
+
+    /**
+     * The batch being collected, guarded by this
+     */
+    private LinkedHashMap<K, Promise<V>> batch;
+
+    private BatchLoader(final Builder<K, V> builder, final Function<List<K>, ? extends Thenable<Map<K, V>>> function) {
+        this.function = function;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.window = builder.window;
+    }
+
+    /**
+     * Loads the value of the specified key with the next batch, each caller
+     * gets its own promise following the load of the key, cancelling it only
+     * drops the interest of the caller
+     *
+     * @param key
+     *            The key
+     * @return the promise of the value, resolved with {@code null} if the
+     *         result of the batch doesn't contain the key, or rejected if the
+     *         batch fails
+     */
+    public Promise<V> load(final K key) {
+        final Promise<V> promise;
+        final LinkedHashMap<K, Promise<V>> full;
+
+        synchronized (this) {
+            LinkedHashMap<K, Promise<V>> batch = this.batch;
+
+            if (null == batch) {
+                this.batch = batch = new LinkedHashMap<K, Promise<V>>();
+                schedule(batch);
+            } else {
+                final Promise<V> existing = batch.get(key);
+                if (null != existing) {
+                    return share(existing);
+                }
+            }
+
+            batch.put(key, promise = new Promise<V>());
+
+            if (batch.size() < this.maxBatchSize) {
+                return share(promise);
+            }
+
+            full = batch;
+            this.batch = null;
+        }
+
+        dispatch(full);
+        return share(promise);
+    }
+
+    /**
+     * Returns a promise following the load of a key on behalf of a single
+     * caller, so the callers of the same key can't cancel it for each other
+     */
+    private static <V> Promise<V> share(final Promise<V> promise) {
+        return promise.then((Consumer<V>) null, (Consumer<Throwable>) null);
+    }
+
+    /**
+     * Loads the values of the specified keys
+     *
+     * @param keys
+     *            The keys
+     * @return the promise of the values in the order of the keys
+     */
+    @SuppressWarnings("unchecked")
+    public Promise<List<V>> loadMany(final Collection<K> keys) {
+        final List<Promise<V>> promises = new ArrayList<Promise<V>>(keys.size());
+
+        for (final K key : keys) {
+            promises.add(load(key));
+        }
+
+        return Promise.all(promises).then((Function<Object[], List<V>>) values -> (List<V>) (List<?>) Arrays.asList(values));
+    }
+
+    /**
+     * Dispatches the batch being collected immediately
+     */
+    public void flush() {
+        flush(null);
+    }
+
+    private void flush(final LinkedHashMap<K, Promise<V>> expected) {
+        final LinkedHashMap<K, Promise<V>> batch;
+
+        synchronized (this) {
+            if (null == (batch = this.batch) || (null != expected && expected != batch)) {
+                return;
+            }
+
+            this.batch = null;
+        }
+
+        dispatch(batch);
+    }
+
+    private void schedule(final LinkedHashMap<K, Promise<V>> batch) {
+        final Runnable flush = () -> flush(batch);
+
+        if (this.window > 0) {
+            Internal.setTimeout(flush, this.window);
+        } else if (!MicrotaskQueue.onDrained(flush)) {
+            // not called by a callback, give the caller at least a millisecond
+            // to issue the rest of its loads, a worker of the pool could run
+            // the flush before the second one otherwise
+            Internal.setTimeout(flush, 1L);
+        }
+    }
+
+    private void dispatch(final LinkedHashMap<K, Promise<V>> batch) {
+        final Promise<Map<K, V>> results;
+
+        try {
+            results = Promise.resolve(this.function.apply(new ArrayList<K>(batch.keySet())));
+        } catch (final Throwable e) {
+            reject(batch, e);
+            return;
+        }
+
+        results.subscribe(new Dispatch<K, V>(batch));
+    }
+
+    static <K, V> void reject(final Map<K, Promise<V>> batch, final Throwable reason) {
+        for (final Promise<V> promise : batch.values()) {
+            promise._reject(reason);
+        }
+    }
+
+    /**
+     * Fans the results of a batch out to the promise of each key
+     */
+    private static final class Dispatch<K, V> extends Subscriber<Map<K, V>, Void> {
+
+        final Map<K, Promise<V>> batch;
+
+        Dispatch(final Map<K, Promise<V>> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final Map<K, V> results) {
+            if (null == results) {
+                reject(new NullPointerException("The result of batch is null"));
+                return;
+            }
+
+            for (final Map.Entry<K, Promise<V>> entry : this.batch.entrySet()) {
+                entry.getValue()._resolve(results.get(entry.getKey()));
+            }
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            BatchLoader.reject(this.batch, reason);
+        }
+    }
+
+    /**
+     * The builder of {@link BatchLoader}
+     *
+     * @param <K>
+     *            The type of key
+     * @param <V>
+     *            The type of value
+     */
+    public static final class Builder<K, V> {
+
+        private int maxBatchSize = Integer.MAX_VALUE;
+
+        private long window;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the number of keys of a batch
+         *
+         * @param maxBatchSize
+         *            The maximum number of keys, a batch is dispatched once it
+         *            reaches the size
+         * @return this builder
+         */
+        public Builder<K, V> maxBatchSize(final int maxBatchSize) {
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("maxBatchSize <= 0");
+            }
+
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Collects the keys for the specified window before dispatching a
+         * batch, instead of dispatching once the current callbacks run out
+         *
+         * @param window
+         *            The window, rounded to the tick of the timer, a window
+         *            shorter than a millisecond is rounded up to one, 0
+         *            means no window
+         * @param unit
+         *            The time unit of the window
+         * @return this builder
+         */
+        public Builder<K, V> window(final long window, final TimeUnit unit) {
+            if (window < 0) {
+                throw new IllegalArgumentException("window < 0");
+            }
+
+            final long millis = unit.toMillis(window);
+            this.window = millis > 0 || 0 == window ? millis : 1L;
+            return this;
+        }
+
+        /**
+         * Builds the loader with the specified batch function
+         *
+         * @param function
+         *            The function to load the values of a batch of keys
+         * @return a new loader
+         */
+        public BatchLoader<K, V> build(final Function<List<K>, ? extends Thenable<Map<K, V>>> function) {
+            if (null == function) {
+                throw new NullPointerException("function");
+            }
+
+            return new BatchLoader<K, V>(this, function);
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The scheduler for blocking work such as JDBC calls and file reads, backed by
+ * a bounded pool separated from the one executing the callbacks, so blocked
+ * threads never stall continuations. The work submitted by
+ * {@link Promise#supplyBlocking(java.util.concurrent.Callable)} and
+ * {@link Promise#thenBlocking(Function)} runs on this pool, then the callbacks
+ * of its promise hop back to their own scheduler.
+ *
+ * <pre>
+ * BlockingScheduler.setDefault(BlockingScheduler.builder()
+ *         .maxThreads(32)
+ *         .queueCapacity(256)
+ *         .rejectionPolicy(BlockingScheduler.RejectionPolicy.CALLER_RUNS)
+ *         .build());
+ *
+ * Promise.supplyBlocking(() -&gt; dao.find(id)).then(row -&gt; ...);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ */
+public final class BlockingScheduler implements Scheduler {
+
+    /**
+     * The action taken when the pool is saturated and its queue is full
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * Rejects the promise of the work with a
+         * {@link RejectedExecutionException}
+         */
+        ABORT,
+
+        /**
+         * Runs the work on the thread asking for it, e.g. the caller of
+         * {@link Promise#supplyBlocking(java.util.concurrent.Callable)},
+         * which slows down the producer. The work of
+         * {@link Promise#thenBlocking(Function)} is submitted by whichever
+         * thread settles the upstream, and the work asked for by a callback
+         * running on the built-in pool would block a thread meant for
+         * continuations, so both are rejected instead.
+         */
+        CALLER_RUNS,
+
+    }
+
+    private static final AtomicLong COUNTER = new AtomicLong(1);
+
+    private static volatile BlockingScheduler defaultScheduler;
+
+    /**
+     * Returns the global default blocking scheduler, created on first use
+     * with the default settings of {@link Builder}
+     *
+     * @return the default blocking scheduler
+     */
+    public static BlockingScheduler getDefault() {
+        BlockingScheduler scheduler = defaultScheduler;
+
+        if (null == scheduler) {
+            synchronized (BlockingScheduler.class) {
+                if (null == (scheduler = defaultScheduler)) {
+                    defaultScheduler = scheduler = builder().build();
+                }
+            }
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Replaces the global default blocking scheduler, the previous one keeps
+     * running the work already submitted
+     *
+     * @param scheduler
+     *            The new default blocking scheduler, or {@code null} to
+     *            restore a built-in one
+     */
+    public static void setDefault(final BlockingScheduler scheduler) {
+        synchronized (BlockingScheduler.class) {
+            defaultScheduler = scheduler;
+        }
+    }
+
+    /**
+     * Returns a builder of {@link BlockingScheduler}
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Submits the specified work to the specified scheduler, and settles the
+     * specified promise with its result, the work is skipped if the promise
+     * is cancelled before it starts. The {@link RejectionPolicy#CALLER_RUNS}
+     * policy applies only if the current thread is the caller asking for the
+     * work.
+     */
+    static <T> void submit(final Scheduler scheduler, final Promise<T> promise, final Supplier<? extends T> work, final Context context, final boolean caller) {
+        final Runnable task = () -> {
+            if (promise.isCancelled()) {
+                return;
+            }
+
+            final Context previous = null == context ? null : context.attach();
+
+            try {
+                if (null == context || !context.reject(promise)) {
+                    promise._resolve(work.get());
+                }
+            } catch (final Throwable e) {
+                promise._reject(e);
+            } finally {
+                if (null != context) {
+                    context.detach(previous);
+                }
+            }
+        };
+
+        try {
+            if (scheduler instanceof BlockingScheduler) {
+                ((BlockingScheduler) scheduler).execute(task, caller);
+            } else {
+                scheduler.execute(task);
+            }
+        } catch (final RejectedExecutionException e) {
+            promise._reject(e);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final RejectionPolicy policy;
+
+    private final int queueCapacity;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private BlockingScheduler(final Builder builder) {
+        final String prefix = "Promise#Blocking-" + COUNTER.getAndIncrement() + "-";
+        final AtomicLong counter = new AtomicLong(1);
+        final ThreadFactory factory = r -> {
+            final Thread thread = new Thread(r, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        // the core threads grow up to the maximum before any work is queued
+        this.executor = new ThreadPoolExecutor(builder.maxThreads, builder.maxThreads, builder.keepAlive, TimeUnit.NANOSECONDS,
+                new ArrayBlockingQueue<Runnable>(builder.queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.policy = builder.policy;
+        this.queueCapacity = builder.queueCapacity;
+    }
+
+    /**
+     * Executes the specified task on the pool, or applies the rejection
+     * policy if the pool is saturated, the task is always queued, even if
+     * it's submitted from a thread of this pool
+     *
+     * @throws RejectedExecutionException
+     *             if the task is rejected by the {@link RejectionPolicy#ABORT}
+     *             policy or the scheduler is shut down
+     */
+    @Override
+    public void execute(final Runnable task) {
+        execute(task, true);
+    }
+
+    /**
+     * Executes the specified task on the pool, a saturated pool runs it on
+     * the current thread by the {@link RejectionPolicy#CALLER_RUNS} policy
+     * only if the current thread is the caller asking for the work, and not a
+     * worker of the built-in pool
+     */
+    void execute(final Runnable task, final boolean caller) {
+        try {
+            this.executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            this.rejected.increment();
+
+            if (!caller || RejectionPolicy.CALLER_RUNS != this.policy || this.executor.isShutdown() || Internal.isPoolThread()) {
+                throw e;
+            }
+
+            task.run();
+        }
+    }
+
+    /**
+     * Stops accepting work, the work already submitted is still executed
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Returns the number of threads executing work
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of threads in the pool
+     */
+    public int getPoolSize() {
+        return this.executor.getPoolSize();
+    }
+
+    /**
+     * Returns the maximum number of threads
+     */
+    public int getMaxThreads() {
+        return this.executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Returns the maximum number of tasks waiting for a thread
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * Returns the number of tasks rejected because the pool was saturated,
+     * including the ones run by the caller
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Returns the ratio of busy threads and queued tasks to the capacity of
+     * the pool, 1 means the next task is rejected
+     */
+    public double getSaturation() {
+        return (double) (getActiveCount() + getQueueSize()) / (getMaxThreads() + getQueueCapacity());
+    }
+
+    @Override
+    public String toString() {
+        return "BlockingScheduler[active=" + getActiveCount() + ", threads=" + getPoolSize() + "/" + getMaxThreads() + ", queue=" + getQueueSize()
+                + "/" + getQueueCapacity() + ", rejected=" + getRejectedCount() + "]";
+    }
+
+    /**
+     * The builder of {@link BlockingScheduler}
+     */
+    public static final class Builder {
+
+        private int maxThreads = 64;
+
+        private int queueCapacity = 1024;
+
+        private long keepAlive = TimeUnit.SECONDS.toNanos(60);
+
+        private RejectionPolicy policy = RejectionPolicy.ABORT;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the number of threads
+         *
+         * @param maxThreads
+         *            The maximum number of threads, 64 by default
+         * @return this builder
+         */
+        public Builder maxThreads(final int maxThreads) {
+            if (maxThreads <= 0) {
+                throw new IllegalArgumentException("maxThreads <= 0");
+            }
+
+            this.maxThreads = maxThreads;
+            return this;
+        }
+
+        /**
+         * Limits the number of tasks waiting for a thread
+         *
+         * @param queueCapacity
+         *            The capacity of the queue, 1024 by default
+         * @return this builder
+         */
+        public Builder queueCapacity(final int queueCapacity) {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("queueCapacity <= 0");
+            }
+
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the time an idle thread is kept alive
+         *
+         * @param keepAlive
+         *            The keep alive time, 60 seconds by default
+         * @param unit
+         *            The time unit of the keep alive time
+         * @return this builder
+         */
+        public Builder keepAlive(final long keepAlive, final TimeUnit unit) {
+            if (keepAlive <= 0) {
+                throw new IllegalArgumentException("keepAlive <= 0");
+            }
+
+            this.keepAlive = unit.toNanos(keepAlive);
+            return this;
+        }
+
+        /**
+         * Sets the action taken when the pool is saturated
+         *
+         * @param policy
+         *            The rejection policy, {@link RejectionPolicy#ABORT} by
+         *            default
+         * @return this builder
+         */
+        public Builder rejectionPolicy(final RejectionPolicy policy) {
+            if (null == policy) {
+                throw new NullPointerException("policy");
+            }
+
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Builds the scheduler
+         *
+         * @return a new blocking scheduler
+         */
+        public BlockingScheduler build() {
+            return new BlockingScheduler(this);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber which submits the function passed to
+ * {@link Promise#thenBlocking(Function, Scheduler)} to the blocking scheduler
+ * once the upstream is fulfilled, it's notified on the settling thread since
+ * the submission doesn't block
+ */
+final class BlockingSubscriber<V, R> extends Subscriber<V, R> {
+
+    Function<V, R> function;
+    final Promise<R> next;
+    final Scheduler scheduler;
+    final Context context;
+
+    public BlockingSubscriber(final Function<V, R> function, final Promise<R> next, final Scheduler scheduler) {
+        this.function = function;
+        this.next = next;
+        this.scheduler = scheduler;
+        this.context = Context.capture();
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        final Function<V, R> function = this.function;
+
+        if (null != function) {
+            // submitted by the settling thread, which never runs the work
+            BlockingScheduler.submit(this.scheduler, this.next, () -> function.apply(value), this.context, false);
+        }
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.next._reject(reason);
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.next.isCancelled();
+    }
+
+    @Override
+    void dispose() {
+        this.function = null;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber which runs the hook registered by the executor when the
+ * promise is cancelled
+ */
+final class CancelHook<V> extends Subscriber<V, Void> {
+
+    Runnable hook;
+
+    public CancelHook(final Runnable hook) {
+        this.hook = hook;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.hook = null;
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.hook = null;
+    }
+
+    @Override
+    public void cancel(final Throwable reason) {
+        final Runnable hook = this.hook;
+
+        if (null != hook) {
+            this.hook = null;
+            hook.run();
+        }
+    }
+
+    @Override
+    boolean isCancelled() {
+        // the hook is not an interest in the result
+        return true;
+    }
+
+    @Override
+    boolean handlesRejection() {
+        return false;
+    }
+
+}
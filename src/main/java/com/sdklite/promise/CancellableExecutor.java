@@ -0,0 +1,22 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that is passed with the arguments resolve, reject and
+ * onCancel, the onCancel function registers the hook to stop the pending work
+ * when the promise is cancelled.
+ * 
+ * @author johnsonlee
+ *
+ * @param <T>
+ *            The resolve function
+ * @param <U>
+ *            The reject function
+ * @param <C>
+ *            The onCancel function
+ */
+@FunctionalInterface
+public interface CancellableExecutor<T, U, C> {
+
+    void accept(T t, U u, C c) throws Throwable;
+
+}
@@ -0,0 +1,265 @@
+package com.sdklite.promise;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Emits the values of a group of promises in the order they are fulfilled,
+ * instead of buffering all of them until the slowest one settles. The values
+ * are delivered one at a time, never concurrently, and only as many as
+ * requested, the values which are not requested yet are kept until they are
+ * consumed.
+ *
+ * <pre>
+ * final Completions&lt;Response&gt; responses = Promise.stream(requests);
+ * responses.forEach(response -&gt; {
+ *     sink.write(response);
+ *     responses.request(1);
+ * }, 16).then(v -&gt; sink.close());
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ * @param <T>
+ *            The type of value
+ */
+public final class Completions<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Completions> WIP = AtomicIntegerFieldUpdater.newUpdater(Completions.class, "wip");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Completions> PENDING = AtomicIntegerFieldUpdater.newUpdater(Completions.class, "pending");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<Completions> REQUESTED = AtomicLongFieldUpdater.newUpdater(Completions.class, "requested");
+
+    private static final Object NIL = new Object();
+
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<Object>();
+
+    private final Promise<Void> promise = new Promise<Void>();
+
+    private Iterable<?> iterable;
+
+    private Consumer<T> consumer;
+
+    volatile int wip;
+
+    /**
+     * The number of inputs not settled yet, plus one while subscribing
+     */
+    volatile int pending = 1;
+
+    volatile long requested;
+
+    volatile boolean cancelled;
+
+    Completions(final Iterable<?> iterable) {
+        this.iterable = iterable;
+        this.promise.onCancel(this::cancel);
+    }
+
+    /**
+     * Starts consuming the values with unbounded demand
+     *
+     * @param consumer
+     *            The consumer to accept each value
+     * @return a {@link Promise} that is resolved after all values have been
+     *         consumed, or rejected with the reason of the first input that
+     *         rejects or the error thrown by the consumer
+     */
+    public Promise<Void> forEach(final Consumer<T> consumer) {
+        return forEach(consumer, Long.MAX_VALUE);
+    }
+
+    /**
+     * Starts consuming the values with the specified initial demand, more
+     * values are requested by {@link #request(long)}
+     *
+     * @param consumer
+     *            The consumer to accept each value
+     * @param demand
+     *            The number of values to deliver before the next
+     *            {@link #request(long)}
+     * @return a {@link Promise} that is resolved after all values have been
+     *         consumed, or rejected with the reason of the first input that
+     *         rejects or the error thrown by the consumer
+     * @throws IllegalStateException
+     *             if this stream has been consumed
+     */
+    @SuppressWarnings("unchecked")
+    public Promise<Void> forEach(final Consumer<T> consumer, final long demand) {
+        if (null == consumer) {
+            throw new NullPointerException("consumer");
+        }
+
+        final Iterable<?> iterable;
+
+        synchronized (this) {
+            if (null == (iterable = this.iterable)) {
+                throw new IllegalStateException("Already consumed");
+            }
+
+            this.iterable = null;
+            this.consumer = consumer;
+        }
+
+        this.requested = Math.max(0L, demand);
+
+        for (final Object input : iterable) {
+            if (this.cancelled) {
+                break;
+            }
+
+            PENDING.incrementAndGet(this);
+
+            if (input instanceof Thenable) {
+                Promise.resolve((Thenable<Object>) input).subscribe(new Input());
+            } else {
+                onSettled(null == input ? NIL : input);
+            }
+        }
+
+        onSettled(null);
+        return this.promise;
+    }
+
+    /**
+     * Requests more values to be delivered
+     *
+     * @param n
+     *            The number of additional values
+     */
+    public void request(final long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n <= 0");
+        }
+
+        for (;;) {
+            final long r = this.requested;
+            final long u = r + n < 0 ? Long.MAX_VALUE : r + n;
+
+            if (REQUESTED.compareAndSet(this, r, u)) {
+                break;
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Stops delivering values, the values not delivered yet are discarded and
+     * the {@link Promise} returned by {@link #forEach(Consumer, long)} is
+     * cancelled
+     */
+    public void cancel() {
+        if (!this.cancelled) {
+            this.cancelled = true;
+            this.promise.cancel();
+            drain();
+        }
+    }
+
+    /**
+     * Enqueues the value of a settled input
+     *
+     * @param value
+     *            The value, or {@code null} if all inputs are subscribed
+     */
+    private void onSettled(final Object value) {
+        if (null != value) {
+            this.queue.offer(value);
+        }
+
+        PENDING.decrementAndGet(this);
+        drain();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        if (0 != WIP.getAndIncrement(this)) {
+            return;
+        }
+
+        for (int missed = 1;;) {
+            final long r = this.requested;
+            long e = 0;
+
+            while (e != r && !this.cancelled) {
+                final Object value = this.queue.poll();
+                if (null == value) {
+                    break;
+                }
+
+                if (value instanceof Failure) {
+                    fail(((Failure) value).reason);
+                    break;
+                }
+
+                try {
+                    this.consumer.accept(NIL == value ? null : (T) value);
+                } catch (final Throwable t) {
+                    fail(t);
+                    break;
+                }
+
+                e++;
+            }
+
+            if (this.cancelled) {
+                this.queue.clear();
+            } else if (0 == this.pending && this.queue.isEmpty()) {
+                this.promise._resolve(null);
+            }
+
+            if (0 != e && Long.MAX_VALUE != r) {
+                REQUESTED.addAndGet(this, -e);
+            }
+
+            if (0 == (missed = WIP.addAndGet(this, -missed))) {
+                return;
+            }
+        }
+    }
+
+    private void fail(final Throwable reason) {
+        this.cancelled = true;
+        this.promise._reject(reason);
+    }
+
+    private static final class Failure {
+
+        final Throwable reason;
+
+        Failure(final Throwable reason) {
+            this.reason = reason;
+        }
+    }
+
+    final class Input extends Subscriber<Object, Void> {
+
+        @Override
+        public Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        public void resolve(final Object value) {
+            onSettled(null == value ? NIL : value);
+        }
+
+        @Override
+        public void reject(final Throwable reason) {
+            onSettled(new Failure(reason));
+        }
+
+        @Override
+        boolean isCancelled() {
+            return Completions.this.cancelled;
+        }
+    }
+
+}
@@ -1,15 +1,68 @@
 package com.sdklite.promise;
 
-final class ConsumerSubscriber<V> implements Subscriber<V, Void> {
+final class ConsumerSubscriber<V> extends Subscriber<V, Void> {
 
-    final Consumer<V> onFulfilled;
-    final Consumer<Throwable> onRejected;
+    Consumer<V> onFulfilled;
+    Consumer<Throwable> onRejected;
     final Promise<V> next;
+    final Context context;
 
     public ConsumerSubscriber(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected, final Promise<V> next) {
         this.onFulfilled = onFulfilled;
         this.onRejected = onRejected;
         this.next = next;
+        this.context = Context.capture();
+    }
+
+    @Override
+    public Promise<?> next() {
+        return this.next;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        final Context context = this.context;
+
+        if (null == context) {
+            Promise._resolve(this.next, this.onFulfilled, value);
+            return;
+        }
+
+        final Context previous = context.attach();
+
+        try {
+            if (!context.reject(this.next)) {
+                Promise._resolve(this.next, this.onFulfilled, value);
+            }
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        final Context context = this.context;
+
+        if (null == context) {
+            Promise._reject(this.next, this.onRejected, reason);
+            return;
+        }
+
+        final Context previous = context.attach();
+
+        try {
+            if (!context.reject(this.next)) {
+                Promise._reject(this.next, this.onRejected, reason);
+            }
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    @Override
+    void dispose() {
+        this.onFulfilled = null;
+        this.onRejected = null;
     }
 
 }
@@ -0,0 +1,282 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An immutable set of values and an optional deadline which follows the
+ * callbacks of promises across threads. The context current at
+ * {@link Promise#then(Function, Function) then} is captured once by the
+ * subscriber, and restored while its callback is executed, so the promises
+ * chained inside the callback capture it again; a callback whose deadline has
+ * expired is not executed, its promise is rejected with a
+ * {@link TimeoutException} instead.
+ *
+ * <pre>
+ * static final Context.Key&lt;String&gt; TRACE_ID = Context.key("traceId");
+ *
+ * Context.current().with(TRACE_ID, traceId).withTimeout(200, TimeUnit.MILLISECONDS).call(() -&gt; {
+ *     return fetch(url).then(response -&gt; {
+ *         log(Context.current().get(TRACE_ID), response);
+ *         ...
+ *     });
+ * });
+ * </pre>
+ *
+ * Until a non-empty context is created, capturing costs a single volatile
+ * read per {@code then}.
+ *
+ * @author johnsonlee
+ *
+ */
+public final class Context {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final Context EMPTY = new Context(null, null, null, NO_DEADLINE);
+
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<Context>() {
+        @Override
+        protected Context initialValue() {
+            return EMPTY;
+        }
+    };
+
+    /**
+     * Whether a non-empty context has ever been created
+     */
+    private static volatile boolean used;
+
+    /**
+     * Returns a new key
+     *
+     * @param name
+     *            The name of the key for debugging
+     * @return a new key which is equal to itself only
+     */
+    public static <T> Key<T> key(final String name) {
+        return new Key<T>(name);
+    }
+
+    /**
+     * Returns the context attached to the current thread
+     *
+     * @return the current context, or the empty context if none is attached
+     */
+    public static Context current() {
+        return used ? CURRENT.get() : EMPTY;
+    }
+
+    /**
+     * Returns the empty context
+     *
+     * @return the context without any value and deadline
+     */
+    public static Context empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the context to be carried by a callback, or {@code null} if the
+     * current context is empty
+     */
+    static Context capture() {
+        if (!used) {
+            return null;
+        }
+
+        final Context context = CURRENT.get();
+        return EMPTY == context ? null : context;
+    }
+
+    private final Key<?> key;
+
+    private final Object value;
+
+    private final Context parent;
+
+    /**
+     * The deadline in {@link System#nanoTime()}, or {@link #NO_DEADLINE}
+     */
+    private final long deadline;
+
+    private Context(final Key<?> key, final Object value, final Context parent, final long deadline) {
+        this.key = key;
+        this.value = value;
+        this.parent = parent;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the value associated with the specified key
+     *
+     * @param key
+     *            The key
+     * @return the value, or {@code null} if none is associated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(final Key<T> key) {
+        for (Context context = this; null != context; context = context.parent) {
+            if (key == context.key) {
+                return (T) context.value;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a new context with the specified value associated with the
+     * specified key in addition to the values of this context
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value
+     * @return a new context
+     */
+    public <T> Context with(final Key<T> key, final T value) {
+        if (null == key) {
+            throw new NullPointerException("key");
+        }
+
+        used = true;
+        return new Context(key, value, this, this.deadline);
+    }
+
+    /**
+     * Returns a new context whose deadline is the earlier one between the
+     * deadline of this context and the specified timeout from now
+     *
+     * @param timeout
+     *            The timeout
+     * @param unit
+     *            The time unit of the timeout
+     * @return a new context with the deadline
+     */
+    public Context withTimeout(final long timeout, final TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        if (NO_DEADLINE != this.deadline && this.deadline - deadline <= 0) {
+            return this;
+        }
+
+        used = true;
+        return new Context(this.key, this.value, this.parent, deadline);
+    }
+
+    /**
+     * Returns whether the deadline of this context has expired
+     *
+     * @return false if it has no deadline or the deadline is ahead
+     */
+    public boolean isExpired() {
+        return NO_DEADLINE != this.deadline && System.nanoTime() - this.deadline >= 0;
+    }
+
+    /**
+     * Returns the time remaining until the deadline
+     *
+     * @param unit
+     *            The time unit of the result
+     * @return the remaining time, {@link Long#MAX_VALUE} if this context has
+     *         no deadline, or a non-positive value if it has expired
+     */
+    public long getRemaining(final TimeUnit unit) {
+        if (NO_DEADLINE == this.deadline) {
+            return Long.MAX_VALUE;
+        }
+
+        return unit.convert(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Attaches this context to the current thread
+     *
+     * @return the context previously attached, to be passed to
+     *         {@link #detach(Context)}
+     */
+    public Context attach() {
+        final Context previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Restores the specified context previously attached to the current
+     * thread
+     *
+     * @param previous
+     *            The context returned by {@link #attach()}
+     */
+    public void detach(final Context previous) {
+        CURRENT.set(previous);
+    }
+
+    /**
+     * Calls the specified supplier with this context attached, the callbacks
+     * of the promises chained inside the supplier are executed with this
+     * context
+     *
+     * @param supplier
+     *            The supplier to start the operation
+     * @return a {@link Promise} of the operation, rejected with a
+     *         {@link TimeoutException} if the deadline has expired
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Promise<T> call(final Supplier<? extends Thenable<T>> supplier) {
+        if (isExpired()) {
+            return Promise.reject(expired());
+        }
+
+        final Context previous = attach();
+
+        try {
+            return Promise.resolve((Thenable<T>) supplier.get());
+        } catch (final Throwable e) {
+            return Promise.reject(e);
+        } finally {
+            detach(previous);
+        }
+    }
+
+    /**
+     * Rejects the specified promise if the deadline has expired, instead of
+     * executing the callback
+     *
+     * @return true if the promise is rejected
+     */
+    boolean reject(final Promise<?> next) {
+        if (!isExpired()) {
+            return false;
+        }
+
+        next._reject(expired());
+        return true;
+    }
+
+    private static TimeoutException expired() {
+        return new TimeoutException("Deadline exceeded");
+    }
+
+    /**
+     * The key of a value in {@link Context}
+     *
+     * @param <T>
+     *            The type of value
+     */
+    public static final class Key<T> {
+
+        private final String name;
+
+        private Key(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+}
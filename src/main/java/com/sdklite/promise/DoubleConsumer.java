@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation that accepts a single {@code double} argument and
+ * returns no result, it's the {@code double} specialization of {@link Consumer}.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface DoubleConsumer {
+
+    void accept(final double value) throws Throwable;
+
+}
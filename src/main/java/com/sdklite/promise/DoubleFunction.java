@@ -0,0 +1,17 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that accepts a {@code double} argument and produces a
+ * result, it's the {@code double} specialization of {@link Function}.
+ * 
+ * @author johnsonlee
+ *
+ * @param <R>
+ *            the type of the result of the function
+ */
+@FunctionalInterface
+public interface DoubleFunction<R> {
+
+    R apply(final double value) throws Throwable;
+
+}
@@ -0,0 +1,413 @@
+package com.sdklite.promise;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The {@code double} specialization of {@link Promise}, the value is stored in a
+ * primitive field instead of a boxed {@link Double}, and it's only boxed when it's
+ * consumed as a {@code Promise<Double>}.
+ * 
+ * @author johnsonlee
+ */
+public class DoublePromise extends Promise<Double> {
+
+    /**
+     * Returns a {@link DoublePromise} that is resolved with the specified value
+     * 
+     * @param value
+     *            The value
+     * @return an already fulfilled {@link DoublePromise}
+     */
+    public static DoublePromise resolve(final double value) {
+        final DoublePromise promise = new DoublePromise();
+        promise.complete(value);
+        return promise;
+    }
+
+    /**
+     * Returns a {@link DoublePromise} that follows the specified thenable, the
+     * fulfilled value is converted by the specified function
+     * 
+     * @param thenable
+     *            The thenable to follow
+     * @param function
+     *            The function to convert the value
+     * @return a {@link DoublePromise} fulfilled with the converted value
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T> DoublePromise from(final Thenable<T> thenable, final ToDoubleFunction<T> function) {
+        final DoublePromise next = new DoublePromise();
+        Promise.resolve(thenable).subscribe((Subscriber) new Then(Then.FROM, function, next), next);
+        return next;
+    }
+
+    /**
+     * Returns a single {@link Promise} that resolves with the values of all
+     * the specified promises in order, or rejects with the reason of the
+     * first promise that rejects
+     * 
+     * @param promises
+     *            The primitive promises
+     * @return a {@link Promise} of the primitive array
+     */
+    public static Promise<double[]> all(final DoublePromise... promises) {
+        final double[] values = new double[promises.length];
+        final Promise<double[]> promise = new Promise<double[]>();
+
+        if (0 == promises.length) {
+            promise._resolve(values);
+            return promise;
+        }
+
+        final All all = new All(promise, values);
+        for (int i = 0; i < promises.length; i++) {
+            promises[i].subscribe(new Slot(all, i));
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a single {@link Promise} that resolves with the values of all
+     * the specified promises in order, or rejects with the reason of the
+     * first promise that rejects
+     * 
+     * @param promises
+     *            The primitive promises
+     * @return a {@link Promise} of the primitive array
+     */
+    public static Promise<double[]> all(final Collection<DoublePromise> promises) {
+        return all(promises.toArray(new DoublePromise[promises.size()]));
+    }
+
+    private static final AtomicIntegerFieldUpdater<DoublePromise> COMPLETED = AtomicIntegerFieldUpdater.newUpdater(DoublePromise.class, "completed");
+
+    /**
+     * The value, written by the first call of {@link #complete(double)} only,
+     * before the promise is fulfilled with {@link Promise#UNBOXED}
+     */
+    double value;
+
+    /**
+     * Whether {@link #complete(double)} has been called
+     */
+    volatile int completed;
+
+    /**
+     * Default constructor
+     */
+    public DoublePromise() {
+        super((Scheduler) null);
+    }
+
+    /**
+     * Create an instance whose callbacks are executed by the specified
+     * scheduler
+     * 
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public DoublePromise(final Scheduler scheduler) {
+        super(scheduler);
+    }
+
+    /**
+     * Create an instance with an executor function
+     * 
+     * @param executor
+     *            The executor function
+     */
+    public DoublePromise(final Executor<DoubleConsumer, Consumer<Throwable>> executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Create an instance with an executor function and a scheduler
+     * 
+     * @param executor
+     *            The executor function
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public DoublePromise(final Executor<DoubleConsumer, Consumer<Throwable>> executor, final Scheduler scheduler) {
+        super(scheduler);
+
+        try {
+            executor.accept(this::complete, this::_reject);
+        } catch (final Throwable e) {
+            _reject(e);
+        }
+    }
+
+    /**
+     * Appends a handler which maps the value to another {@code double}
+     * 
+     * @param operator
+     *            The mapping function
+     * @return a new {@link DoublePromise} resolving to the return value of the
+     *         operator
+     */
+    public DoublePromise map(final DoubleUnaryOperator operator) {
+        return chain(new DoublePromise(this.scheduler()), Then.MAP, operator);
+    }
+
+    /**
+     * Appends a handler which maps the value to an object
+     * 
+     * @param function
+     *            The mapping function
+     * @return a new {@link Promise} resolving to the return value of the
+     *         function
+     */
+    public <R> Promise<R> mapToObj(final DoubleFunction<R> function) {
+        return chain(new Promise<R>(this.scheduler()), Then.MAP_TO_OBJ, function);
+    }
+
+    /**
+     * Appends a handler which consumes the value
+     * 
+     * @param consumer
+     *            The consumer
+     * @return a new {@link DoublePromise} resolving to the same value after the
+     *         consumer returns
+     */
+    public DoublePromise thenAccept(final DoubleConsumer consumer) {
+        return chain(new DoublePromise(this.scheduler()), Then.ACCEPT, consumer);
+    }
+
+    /**
+     * Returns the value if this promise is fulfilled, else returns the given
+     * default value if this promise is still pending
+     * 
+     * @param defaultValue
+     *            The value to return if this promise is pending
+     * @return the fulfilled value or the default value
+     * @throws CompletionException
+     *             if this promise was rejected, the reason is the cause
+     */
+    public double getAsDouble(final double defaultValue) {
+        final Promise<Double> root = root();
+
+        if (root.isUnboxed()) {
+            return ((DoublePromise) root).value;
+        }
+
+        final Double value = root.getNow(null);
+        return null == value ? defaultValue : value;
+    }
+
+    @Override
+    Object box() {
+        return Double.valueOf(this.value);
+    }
+
+    /**
+     * Fulfills this promise with the specified value, only the first call
+     * takes effect. The first caller claims the promise before writing the
+     * value, so the value can't be overwritten by a racing producer after it
+     * has been delivered, while a promise linked to another root is fulfilled
+     * through the root with the boxed value.
+     */
+    void complete(final double value) {
+        if (State.PENDING != state() || !COMPLETED.compareAndSet(this, 0, 1)) {
+            return;
+        }
+
+        this.value = value;
+
+        if (!fulfillUnboxed()) {
+            _resolve(Double.valueOf(value));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <P extends Promise<?>> P chain(final P next, final int kind, final Object function) {
+        subscribe((Subscriber) new Then(kind, function, next), next);
+        return next;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final class Then extends Subscriber<Object, Object> {
+
+        static final int MAP = 0;
+        static final int MAP_TO_OBJ = 1;
+        static final int ACCEPT = 2;
+        static final int FROM = 3;
+
+        final int kind;
+
+        final Promise next;
+
+        Object function;
+
+        final Context context;
+
+        Then(final int kind, final Object function, final Promise<?> next) {
+            this.kind = kind;
+            this.function = function;
+            this.next = next;
+            this.context = Context.capture();
+        }
+
+        @Override
+        Promise<?> next() {
+            return this.next;
+        }
+
+        @Override
+        void resolve(final Object value) {
+            if (this.next.isCancelled()) {
+                return;
+            }
+
+            final Context previous = null == this.context ? null : this.context.attach();
+
+            try {
+                if (null != this.context && this.context.reject(this.next)) {
+                    return;
+                }
+
+                if (FROM == this.kind) {
+                    ((DoublePromise) this.next).complete(((ToDoubleFunction) this.function).applyAsDouble(value));
+                } else {
+                    apply(((Double) value).doubleValue());
+                }
+            } catch (final Throwable e) {
+                this.next._reject(e);
+            } finally {
+                if (null != this.context) {
+                    this.context.detach(previous);
+                }
+            }
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            if (this.next.isCancelled()) {
+                return;
+            }
+
+            final Context previous = null == this.context ? null : this.context.attach();
+
+            try {
+                if (null != this.context && this.context.reject(this.next)) {
+                    return;
+                }
+
+                if (FROM == this.kind) {
+                    // the source might be a primitive promise of another type
+                    ((DoublePromise) this.next).complete(((ToDoubleFunction) this.function).applyAsDouble(root.box()));
+                } else {
+                    apply(((DoublePromise) root).value);
+                }
+            } catch (final Throwable e) {
+                this.next._reject(e);
+            } finally {
+                if (null != this.context) {
+                    this.context.detach(previous);
+                }
+            }
+        }
+
+        private void apply(final double value) throws Throwable {
+            switch (this.kind) {
+            case MAP:
+                ((DoublePromise) this.next).complete(((DoubleUnaryOperator) this.function).applyAsDouble(value));
+                break;
+            case MAP_TO_OBJ:
+                this.next._resolve(((DoubleFunction) this.function).apply(value));
+                break;
+            case ACCEPT:
+                ((DoubleConsumer) this.function).accept(value);
+                ((DoublePromise) this.next).complete(value);
+                break;
+            default:
+                ((DoublePromise) this.next).complete(value);
+                break;
+            }
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            if (!this.next.isCancelled()) {
+                this.next._reject(reason);
+            }
+        }
+
+        @Override
+        void dispose() {
+            this.function = null;
+        }
+    }
+
+    private static final class All {
+
+        static final AtomicIntegerFieldUpdater<All> PENDING = AtomicIntegerFieldUpdater.newUpdater(All.class, "pending");
+
+        final Promise<double[]> promise;
+
+        final double[] values;
+
+        volatile int pending;
+
+        All(final Promise<double[]> promise, final double[] values) {
+            this.promise = promise;
+            this.values = values;
+            this.pending = values.length;
+        }
+
+        void set(final int index, final double value) {
+            this.values[index] = value;
+
+            if (0 == PENDING.decrementAndGet(this)) {
+                this.promise._resolve(this.values);
+            }
+        }
+    }
+
+    private static final class Slot extends Subscriber<Double, Void> {
+
+        final All all;
+
+        final int index;
+
+        Slot(final All all, final int index) {
+            this.all = all;
+            this.index = index;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final Double value) {
+            try {
+                this.all.set(this.index, value);
+            } catch (final Throwable e) {
+                this.all.promise._reject(e);
+            }
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            this.all.set(this.index, ((DoublePromise) root).value);
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.all.promise._reject(reason);
+        }
+
+        @Override
+        boolean isCancelled() {
+            return State.PENDING != this.all.promise.state();
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation on a single {@code double} operand that produces a
+ * {@code double} result.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface DoubleUnaryOperator {
+
+    double applyAsDouble(final double operand) throws Throwable;
+
+}
@@ -1,15 +1,68 @@
 package com.sdklite.promise;
 
-final class FunctionSubscriber<V, R> implements Subscriber<V, R> {
+final class FunctionSubscriber<V, R> extends Subscriber<V, R> {
 
-    final Function<V, R> onFulfilled;
-    final Function<Throwable, R> onRejected;
+    Function<V, R> onFulfilled;
+    Function<Throwable, R> onRejected;
     final Promise<?> next;
+    final Context context;
 
     public FunctionSubscriber(final Function<V, R> onFulfilled, final Function<Throwable, R> onRejected, final Promise<?> next) {
         this.onFulfilled = onFulfilled;
         this.onRejected = onRejected;
         this.next = next;
+        this.context = Context.capture();
+    }
+
+    @Override
+    public Promise<?> next() {
+        return this.next;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        final Context context = this.context;
+
+        if (null == context) {
+            Promise._resolve(this.next, this.onFulfilled, value);
+            return;
+        }
+
+        final Context previous = context.attach();
+
+        try {
+            if (!context.reject(this.next)) {
+                Promise._resolve(this.next, this.onFulfilled, value);
+            }
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        final Context context = this.context;
+
+        if (null == context) {
+            Promise._reject(this.next, this.onRejected, reason);
+            return;
+        }
+
+        final Context previous = context.attach();
+
+        try {
+            if (!context.reject(this.next)) {
+                Promise._reject(this.next, this.onRejected, reason);
+            }
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    @Override
+    void dispose() {
+        this.onFulfilled = null;
+        this.onRejected = null;
     }
 
 }
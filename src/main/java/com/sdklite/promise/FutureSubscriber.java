@@ -0,0 +1,37 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The subscriber which completes a {@link CompletableFuture} on the settling
+ * thread
+ */
+final class FutureSubscriber<V> extends Subscriber<V, Void> {
+
+    final CompletableFuture<V> future;
+
+    public FutureSubscriber(final CompletableFuture<V> future) {
+        this.future = future;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.future.complete(value);
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.future.completeExceptionally(reason);
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.future.isCancelled();
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer optimized for a large number of timeouts which are mostly cancelled
+ * before they expire, scheduling and cancellation are O(1), the expired tasks
+ * are handed to their {@link Scheduler} by a dedicated tick thread.
+ *
+ * @author johnsonlee
+ *
+ */
+final class HashedWheelTimer {
+
+    private final long tickNanos;
+
+    private final Timeout[] wheel;
+
+    private final int mask;
+
+    private final ThreadFactory factory;
+
+    /**
+     * The timeouts scheduled since the last tick, linked as a stack
+     */
+    private final AtomicReference<Timeout> incoming = new AtomicReference<Timeout>();
+
+    private final AtomicReference<Thread> worker = new AtomicReference<Thread>();
+
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Create an instance
+     *
+     * @param tickDuration
+     *            The duration between ticks
+     * @param unit
+     *            The time unit of the tick duration
+     * @param ticksPerWheel
+     *            The number of buckets, rounded up to a power of 2
+     * @param factory
+     *            The factory to create the tick thread
+     */
+    public HashedWheelTimer(final long tickDuration, final TimeUnit unit, final int ticksPerWheel, final ThreadFactory factory) {
+        final int n = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+        this.wheel = new Timeout[n];
+        this.mask = n - 1;
+        this.factory = factory;
+    }
+
+    /**
+     * Schedules the specified task to be executed by the specified scheduler
+     * after the given delay
+     *
+     * @param scheduler
+     *            The scheduler to execute the task
+     * @param task
+     *            The task to execute
+     * @param delay
+     *            The delay in milliseconds
+     * @return the handle to cancel the task
+     */
+    public Timeout schedule(final Scheduler scheduler, final Runnable task, final long delay) {
+        start();
+
+        final Timeout timeout = new Timeout(scheduler, task, System.nanoTime() - this.startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, delay)));
+
+        for (;;) {
+            final Timeout head = this.incoming.get();
+            timeout.next = head;
+            if (this.incoming.compareAndSet(head, timeout)) {
+                return timeout;
+            }
+        }
+    }
+
+    private void start() {
+        if (null != this.worker.get()) {
+            return;
+        }
+
+        final Thread thread = this.factory.newThread(this::run);
+        if (this.worker.compareAndSet(null, thread)) {
+            thread.start();
+        }
+    }
+
+    private void run() {
+        for (long tick = (System.nanoTime() - this.startTime) / this.tickNanos;; tick++) {
+            final long deadline = waitForNextTick(tick);
+            transfer(tick);
+            expire(tick & this.mask, deadline);
+        }
+    }
+
+    private long waitForNextTick(final long tick) {
+        final long deadline = this.tickNanos * (tick + 1);
+
+        for (;;) {
+            final long now = System.nanoTime() - this.startTime;
+            if (now >= deadline) {
+                return now;
+            }
+
+            LockSupport.parkNanos(this, deadline - now);
+        }
+    }
+
+    private void transfer(final long tick) {
+        for (Timeout timeout = this.incoming.getAndSet(null), next; null != timeout; timeout = next) {
+            next = timeout.next;
+            timeout.next = null;
+
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            final long ticks = timeout.deadline / this.tickNanos;
+            timeout.rounds = (ticks - tick) / this.wheel.length;
+
+            final int index = (int) (Math.max(ticks, tick) & this.mask);
+            final Timeout head = this.wheel[index];
+            timeout.next = head;
+            if (null != head) {
+                head.prev = timeout;
+            }
+            this.wheel[index] = timeout;
+        }
+    }
+
+    private void expire(final long index, final long now) {
+        final int i = (int) index;
+
+        for (Timeout timeout = this.wheel[i], next; null != timeout; timeout = next) {
+            next = timeout.next;
+
+            if (timeout.isCancelled()) {
+                remove(i, timeout);
+            } else if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                remove(i, timeout);
+
+                try {
+                    timeout.expire();
+                } catch (final Throwable t) {
+                    // report and keep ticking, the timer is shared by all
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    private void remove(final int index, final Timeout timeout) {
+        if (null != timeout.prev) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.wheel[index] = timeout.next;
+        }
+
+        if (null != timeout.next) {
+            timeout.next.prev = timeout.prev;
+        }
+
+        timeout.prev = timeout.next = null;
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.sdklite.promise;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues hedged requests to cut the tail latency, if an attempt hasn't
+ * fulfilled within the hedging delay, a duplicate attempt is started, the
+ * first fulfilled attempt wins and the others are cancelled. The delay is
+ * either fixed or a percentile of the recent latencies, and the extra load is
+ * bounded by a budget.
+ *
+ * <pre>
+ * final Hedger hedger = Hedger.builder()
+ *         .delay(50, TimeUnit.MILLISECONDS)   // until enough latencies are sampled
+ *         .percentile(0.95)
+ *         .budget(0.05)                       // at most 5% extra attempts
+ *         .build();
+ *
+ * hedger.execute(() -&gt; client.get(key)).then(value -&gt; ...);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ */
+public final class Hedger {
+
+    /**
+     * The number of recent latencies to compute the percentile, must be a
+     * power of 2
+     */
+    private static final int SAMPLES = 256;
+
+    /**
+     * The number of latencies sampled between the computations of the
+     * percentile, must be a power of 2
+     */
+    private static final int INTERVAL = 64;
+
+    private static final AtomicLongFieldUpdater<Hedger> RECORDED = AtomicLongFieldUpdater.newUpdater(Hedger.class, "recorded");
+
+    /**
+     * Returns a builder of {@link Hedger}
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final int maxAttempts;
+
+    private final double percentile;
+
+    private final double budget;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder wins = new LongAdder();
+
+    volatile long recorded;
+
+    /**
+     * The hedging delay in nanoseconds
+     */
+    private volatile long delay;
+
+    private Hedger(final Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.percentile = builder.percentile;
+        this.budget = builder.budget;
+        this.delay = builder.delay;
+    }
+
+    /**
+     * Executes the operation supplied by the specified supplier with hedging
+     *
+     * @param supplier
+     *            The supplier to start an attempt of the operation
+     * @return a {@link Promise} that is resolved with the value of the first
+     *         fulfilled attempt, or rejected with the reason of the last
+     *         attempt if all of them are rejected
+     */
+    public <V> Promise<V> execute(final Supplier<? extends Thenable<V>> supplier) {
+        if (null == supplier) {
+            throw new NullPointerException("supplier");
+        }
+
+        this.requests.increment();
+
+        final Execution<V> execution = new Execution<V>(this, supplier);
+        execution.attempt();
+        return execution.promise;
+    }
+
+    /**
+     * Returns the current hedging delay
+     *
+     * @param unit
+     *            The time unit of the result
+     * @return the delay before starting a duplicate attempt
+     */
+    public long getDelay(final TimeUnit unit) {
+        return unit.convert(this.delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of operations executed
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Returns the number of duplicate attempts started
+     */
+    public long getHedges() {
+        return this.hedges.sum();
+    }
+
+    /**
+     * Returns the number of operations won by a duplicate attempt
+     */
+    public long getHedgeWins() {
+        return this.wins.sum();
+    }
+
+    /**
+     * Returns whether another duplicate attempt fits in the budget
+     */
+    boolean admit() {
+        return Double.isInfinite(this.budget) || this.hedges.sum() < this.budget * this.requests.sum();
+    }
+
+    /**
+     * Samples the latency of a fulfilled execution, and recomputes the delay
+     * once in a while if it's adaptive. The latency is measured from the
+     * start of the execution, as the attempts cancelled by a faster duplicate
+     * are never sampled, the latencies of the winners alone would shrink the
+     * delay with each computation.
+     */
+    void record(final long latency) {
+        if (this.percentile <= 0) {
+            return;
+        }
+
+        final long n = RECORDED.getAndIncrement(this);
+        this.latencies.set((int) (n & (SAMPLES - 1)), latency);
+
+        if (n < SAMPLES / 2 || (INTERVAL - 1) != (n & (INTERVAL - 1))) {
+            return;
+        }
+
+        final int size = (int) Math.min(n + 1, SAMPLES);
+        final long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = this.latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        this.delay = sorted[Math.min(size - 1, (int) (this.percentile * size))];
+    }
+
+    /**
+     * The attempts of a single operation
+     */
+    private static final class Execution<V> {
+
+        final Hedger hedger;
+
+        final Supplier<? extends Thenable<V>> supplier;
+
+        final Promise<V> promise = new Promise<V>();
+
+        final long startedAt = System.nanoTime();
+
+        /**
+         * The pending attempts, guarded by this
+         */
+        final Promise<?>[] attempts;
+
+        /**
+         * The number of attempts started, guarded by this
+         */
+        int started;
+
+        /**
+         * The number of attempts rejected, guarded by this
+         */
+        int rejected;
+
+        /**
+         * The timer to start the next attempt, guarded by this
+         */
+        Timeout timer;
+
+        volatile boolean done;
+
+        Execution(final Hedger hedger, final Supplier<? extends Thenable<V>> supplier) {
+            this.hedger = hedger;
+            this.supplier = supplier;
+            this.attempts = new Promise<?>[hedger.maxAttempts];
+            this.promise.onCancel(() -> settle());
+        }
+
+        @SuppressWarnings("unchecked")
+        void attempt() {
+            final int index;
+
+            synchronized (this) {
+                if (this.done || this.started >= this.attempts.length) {
+                    return;
+                }
+
+                index = this.started++;
+            }
+
+            if (index > 0) {
+                this.hedger.hedges.increment();
+            }
+
+            Promise<V> attempt;
+
+            try {
+                attempt = Promise.resolve((Thenable<V>) this.supplier.get());
+            } catch (final Throwable e) {
+                attempt = Promise.reject(e);
+            }
+
+            synchronized (this) {
+                if (!this.done) {
+                    this.attempts[index] = attempt;
+                }
+            }
+
+            if (this.done) {
+                attempt.cancel();
+                return;
+            }
+
+            attempt.subscribe(new Attempt<V>(this, index));
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (this.done || null != this.timer || this.started >= this.attempts.length || !this.hedger.admit()) {
+                    return;
+                }
+
+                this.timer = Internal.setTimeout(() -> {
+                    synchronized (this) {
+                        this.timer = null;
+                    }
+                    attempt();
+                }, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(this.hedger.delay)));
+            }
+        }
+
+        void onFulfilled(final int index, final V value) {
+            if (!settle()) {
+                return;
+            }
+
+            this.hedger.record(System.nanoTime() - this.startedAt);
+
+            if (index > 0) {
+                this.hedger.wins.increment();
+            }
+
+            this.promise._resolve(value);
+        }
+
+        void onRejected(final int index, final Throwable reason) {
+            final boolean exhausted;
+
+            synchronized (this) {
+                if (this.done) {
+                    return;
+                }
+
+                this.attempts[index] = null;
+                if (++this.rejected < this.started) {
+                    // the other attempts are still pending
+                    return;
+                }
+
+                exhausted = this.started >= this.attempts.length;
+            }
+
+            if (!exhausted && this.hedger.admit()) {
+                // nothing is pending, start the next attempt right away
+                attempt();
+            } else if (settle()) {
+                this.promise._reject(reason);
+            }
+        }
+
+        /**
+         * Stops hedging and cancels the pending attempts
+         *
+         * @return true if the execution is settled by this call
+         */
+        private boolean settle() {
+            final Promise<?>[] pending;
+            final Timeout timer;
+
+            synchronized (this) {
+                if (this.done) {
+                    return false;
+                }
+
+                this.done = true;
+                pending = this.attempts.clone();
+                timer = this.timer;
+                this.timer = null;
+                Arrays.fill(this.attempts, null);
+            }
+
+            if (null != timer) {
+                timer.cancel();
+            }
+
+            for (final Promise<?> attempt : pending) {
+                if (null != attempt) {
+                    attempt.cancel();
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class Attempt<V> extends Subscriber<V, Void> {
+
+        final Execution<V> execution;
+
+        final int index;
+
+        Attempt(final Execution<V> execution, final int index) {
+            this.execution = execution;
+            this.index = index;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final V value) {
+            this.execution.onFulfilled(this.index, value);
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.execution.onRejected(this.index, reason);
+        }
+
+        @Override
+        boolean isCancelled() {
+            return this.execution.done;
+        }
+    }
+
+    /**
+     * The builder of {@link Hedger}
+     */
+    public static final class Builder {
+
+        private int maxAttempts = 2;
+
+        private long delay = TimeUnit.MILLISECONDS.toNanos(10);
+
+        private double percentile;
+
+        private double budget = Double.POSITIVE_INFINITY;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the number of attempts of an operation
+         *
+         * @param maxAttempts
+         *            The maximum number of attempts including the first one,
+         *            2 by default
+         * @return this builder
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("maxAttempts <= 0");
+            }
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before starting a duplicate attempt, or the initial
+         * delay until enough latencies are sampled if the delay is adaptive
+         *
+         * @param delay
+         *            The delay, rounded to the tick of the timer
+         * @param unit
+         *            The time unit of the delay
+         * @return this builder
+         */
+        public Builder delay(final long delay, final TimeUnit unit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay < 0");
+            }
+
+            this.delay = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Adapts the delay to the specified percentile of the latencies of
+         * the recent fulfilled executions
+         *
+         * @param percentile
+         *            The percentile in (0, 1), e.g. 0.95
+         * @return this builder
+         */
+        public Builder percentile(final double percentile) {
+            if (!(percentile > 0 && percentile < 1)) {
+                throw new IllegalArgumentException("percentile must be in (0, 1)");
+            }
+
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Bounds the duplicate attempts to the specified ratio of the
+         * operations, unbounded by default
+         *
+         * @param ratio
+         *            The ratio of duplicate attempts to operations, e.g. 0.05
+         * @return this builder
+         */
+        public Builder budget(final double ratio) {
+            if (!(ratio >= 0)) {
+                throw new IllegalArgumentException("ratio < 0");
+            }
+
+            this.budget = ratio;
+            return this;
+        }
+
+        /**
+         * Builds the hedger
+         *
+         * @return a new hedger
+         */
+        public Hedger build() {
+            return new Hedger(this);
+        }
+    }
+
+}
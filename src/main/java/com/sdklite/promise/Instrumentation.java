@@ -0,0 +1,125 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The listener of the promise lifecycle and the callback execution, it's
+ * called on the hot path of every promise, so implementations are expected to
+ * be cheap and thread safe, e.g. {@link PromiseMetrics}. While nothing is
+ * installed, including a {@link LeakDetector}, the overhead is a single
+ * volatile read per promise and per callback.
+ *
+ * @author johnsonlee
+ *
+ */
+public interface Instrumentation {
+
+    /**
+     * Installs the specified instrumentation globally, the promises created
+     * before are not tracked
+     *
+     * @param instrumentation
+     *            The instrumentation to install, or {@code null} to uninstall
+     */
+    static void install(final Instrumentation instrumentation) {
+        Internal.setInstrumentation(instrumentation);
+    }
+
+    /**
+     * Returns the installed instrumentation
+     *
+     * @return the installed instrumentation or {@code null}
+     */
+    static Instrumentation installed() {
+        return Internal.getInstrumentation();
+    }
+
+    /**
+     * Returns an instrumentation which forwards the events to all of the
+     * specified instrumentations
+     *
+     * @param instrumentations
+     *            The instrumentations to combine
+     * @return the combined instrumentation
+     */
+    static Instrumentation of(final Instrumentation... instrumentations) {
+        final Instrumentation[] array = instrumentations.clone();
+
+        return new Instrumentation() {
+            @Override
+            public void onCreated() {
+                for (final Instrumentation i : array) {
+                    i.onCreated();
+                }
+            }
+
+            @Override
+            public void onSettled(final State state, final long nanos) {
+                for (final Instrumentation i : array) {
+                    i.onSettled(state, nanos);
+                }
+            }
+
+            @Override
+            public void onCallback(final long waitNanos, final long runNanos) {
+                for (final Instrumentation i : array) {
+                    i.onCallback(waitNanos, runNanos);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns an instrumentation which emits JDK Flight Recorder events for
+     * the slow callbacks and the promises which were pending for a long time
+     * once they settle, the events are named
+     * {@code com.sdklite.promise.SlowCallback} and
+     * {@code com.sdklite.promise.LongPending}. A promise which never settles
+     * is never reported by this instrumentation, install a
+     * {@link LeakDetector} to catch those.
+     *
+     * @param slowCallback
+     *            The minimum execution time of a callback to be reported
+     * @param longPending
+     *            The minimum time from creation to settlement of a promise to
+     *            be reported
+     * @param unit
+     *            The time unit of the thresholds
+     * @return the instrumentation emitting JFR events
+     * @throws UnsupportedOperationException
+     *             if the running JVM doesn't support JFR events
+     */
+    static Instrumentation jfr(final long slowCallback, final long longPending, final TimeUnit unit) {
+        return new JfrInstrumentation(unit.toNanos(slowCallback), unit.toNanos(longPending));
+    }
+
+    /**
+     * Called when a promise is created
+     */
+    default void onCreated() {
+    }
+
+    /**
+     * Called when a promise is settled
+     *
+     * @param state
+     *            The settled state
+     * @param nanos
+     *            The time from creation to settlement in nanoseconds, 0 if
+     *            the promise was created settled
+     */
+    default void onSettled(final State state, final long nanos) {
+    }
+
+    /**
+     * Called after a callback scheduled by a promise is executed
+     *
+     * @param waitNanos
+     *            The time the callback waited in the queue in nanoseconds
+     * @param runNanos
+     *            The execution time of the callback in nanoseconds
+     */
+    default void onCallback(final long waitNanos, final long runNanos) {
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation that accepts a single {@code int} argument and
+ * returns no result, it's the {@code int} specialization of {@link Consumer}.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface IntConsumer {
+
+    void accept(final int value) throws Throwable;
+
+}
@@ -0,0 +1,17 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that accepts a {@code int} argument and produces a
+ * result, it's the {@code int} specialization of {@link Function}.
+ * 
+ * @author johnsonlee
+ *
+ * @param <R>
+ *            the type of the result of the function
+ */
+@FunctionalInterface
+public interface IntFunction<R> {
+
+    R apply(final int value) throws Throwable;
+
+}
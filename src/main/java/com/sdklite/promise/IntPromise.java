@@ -0,0 +1,413 @@
+package com.sdklite.promise;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The {@code int} specialization of {@link Promise}, the value is stored in a
+ * primitive field instead of a boxed {@link Integer}, and it's only boxed when it's
+ * consumed as a {@code Promise<Integer>}.
+ * 
+ * @author johnsonlee
+ */
+public class IntPromise extends Promise<Integer> {
+
+    /**
+     * Returns a {@link IntPromise} that is resolved with the specified value
+     * 
+     * @param value
+     *            The value
+     * @return an already fulfilled {@link IntPromise}
+     */
+    public static IntPromise resolve(final int value) {
+        final IntPromise promise = new IntPromise();
+        promise.complete(value);
+        return promise;
+    }
+
+    /**
+     * Returns a {@link IntPromise} that follows the specified thenable, the
+     * fulfilled value is converted by the specified function
+     * 
+     * @param thenable
+     *            The thenable to follow
+     * @param function
+     *            The function to convert the value
+     * @return a {@link IntPromise} fulfilled with the converted value
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T> IntPromise from(final Thenable<T> thenable, final ToIntFunction<T> function) {
+        final IntPromise next = new IntPromise();
+        Promise.resolve(thenable).subscribe((Subscriber) new Then(Then.FROM, function, next), next);
+        return next;
+    }
+
+    /**
+     * Returns a single {@link Promise} that resolves with the values of all
+     * the specified promises in order, or rejects with the reason of the
+     * first promise that rejects
+     * 
+     * @param promises
+     *            The primitive promises
+     * @return a {@link Promise} of the primitive array
+     */
+    public static Promise<int[]> all(final IntPromise... promises) {
+        final int[] values = new int[promises.length];
+        final Promise<int[]> promise = new Promise<int[]>();
+
+        if (0 == promises.length) {
+            promise._resolve(values);
+            return promise;
+        }
+
+        final All all = new All(promise, values);
+        for (int i = 0; i < promises.length; i++) {
+            promises[i].subscribe(new Slot(all, i));
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a single {@link Promise} that resolves with the values of all
+     * the specified promises in order, or rejects with the reason of the
+     * first promise that rejects
+     * 
+     * @param promises
+     *            The primitive promises
+     * @return a {@link Promise} of the primitive array
+     */
+    public static Promise<int[]> all(final Collection<IntPromise> promises) {
+        return all(promises.toArray(new IntPromise[promises.size()]));
+    }
+
+    private static final AtomicIntegerFieldUpdater<IntPromise> COMPLETED = AtomicIntegerFieldUpdater.newUpdater(IntPromise.class, "completed");
+
+    /**
+     * The value, written by the first call of {@link #complete(int)} only,
+     * before the promise is fulfilled with {@link Promise#UNBOXED}
+     */
+    int value;
+
+    /**
+     * Whether {@link #complete(int)} has been called
+     */
+    volatile int completed;
+
+    /**
+     * Default constructor
+     */
+    public IntPromise() {
+        super((Scheduler) null);
+    }
+
+    /**
+     * Create an instance whose callbacks are executed by the specified
+     * scheduler
+     * 
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public IntPromise(final Scheduler scheduler) {
+        super(scheduler);
+    }
+
+    /**
+     * Create an instance with an executor function
+     * 
+     * @param executor
+     *            The executor function
+     */
+    public IntPromise(final Executor<IntConsumer, Consumer<Throwable>> executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Create an instance with an executor function and a scheduler
+     * 
+     * @param executor
+     *            The executor function
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public IntPromise(final Executor<IntConsumer, Consumer<Throwable>> executor, final Scheduler scheduler) {
+        super(scheduler);
+
+        try {
+            executor.accept(this::complete, this::_reject);
+        } catch (final Throwable e) {
+            _reject(e);
+        }
+    }
+
+    /**
+     * Appends a handler which maps the value to another {@code int}
+     * 
+     * @param operator
+     *            The mapping function
+     * @return a new {@link IntPromise} resolving to the return value of the
+     *         operator
+     */
+    public IntPromise map(final IntUnaryOperator operator) {
+        return chain(new IntPromise(this.scheduler()), Then.MAP, operator);
+    }
+
+    /**
+     * Appends a handler which maps the value to an object
+     * 
+     * @param function
+     *            The mapping function
+     * @return a new {@link Promise} resolving to the return value of the
+     *         function
+     */
+    public <R> Promise<R> mapToObj(final IntFunction<R> function) {
+        return chain(new Promise<R>(this.scheduler()), Then.MAP_TO_OBJ, function);
+    }
+
+    /**
+     * Appends a handler which consumes the value
+     * 
+     * @param consumer
+     *            The consumer
+     * @return a new {@link IntPromise} resolving to the same value after the
+     *         consumer returns
+     */
+    public IntPromise thenAccept(final IntConsumer consumer) {
+        return chain(new IntPromise(this.scheduler()), Then.ACCEPT, consumer);
+    }
+
+    /**
+     * Returns the value if this promise is fulfilled, else returns the given
+     * default value if this promise is still pending
+     * 
+     * @param defaultValue
+     *            The value to return if this promise is pending
+     * @return the fulfilled value or the default value
+     * @throws CompletionException
+     *             if this promise was rejected, the reason is the cause
+     */
+    public int getAsInt(final int defaultValue) {
+        final Promise<Integer> root = root();
+
+        if (root.isUnboxed()) {
+            return ((IntPromise) root).value;
+        }
+
+        final Integer value = root.getNow(null);
+        return null == value ? defaultValue : value;
+    }
+
+    @Override
+    Object box() {
+        return Integer.valueOf(this.value);
+    }
+
+    /**
+     * Fulfills this promise with the specified value, only the first call
+     * takes effect. The first caller claims the promise before writing the
+     * value, so the value can't be overwritten by a racing producer after it
+     * has been delivered, while a promise linked to another root is fulfilled
+     * through the root with the boxed value.
+     */
+    void complete(final int value) {
+        if (State.PENDING != state() || !COMPLETED.compareAndSet(this, 0, 1)) {
+            return;
+        }
+
+        this.value = value;
+
+        if (!fulfillUnboxed()) {
+            _resolve(Integer.valueOf(value));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <P extends Promise<?>> P chain(final P next, final int kind, final Object function) {
+        subscribe((Subscriber) new Then(kind, function, next), next);
+        return next;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final class Then extends Subscriber<Object, Object> {
+
+        static final int MAP = 0;
+        static final int MAP_TO_OBJ = 1;
+        static final int ACCEPT = 2;
+        static final int FROM = 3;
+
+        final int kind;
+
+        final Promise next;
+
+        Object function;
+
+        final Context context;
+
+        Then(final int kind, final Object function, final Promise<?> next) {
+            this.kind = kind;
+            this.function = function;
+            this.next = next;
+            this.context = Context.capture();
+        }
+
+        @Override
+        Promise<?> next() {
+            return this.next;
+        }
+
+        @Override
+        void resolve(final Object value) {
+            if (this.next.isCancelled()) {
+                return;
+            }
+
+            final Context previous = null == this.context ? null : this.context.attach();
+
+            try {
+                if (null != this.context && this.context.reject(this.next)) {
+                    return;
+                }
+
+                if (FROM == this.kind) {
+                    ((IntPromise) this.next).complete(((ToIntFunction) this.function).applyAsInt(value));
+                } else {
+                    apply(((Integer) value).intValue());
+                }
+            } catch (final Throwable e) {
+                this.next._reject(e);
+            } finally {
+                if (null != this.context) {
+                    this.context.detach(previous);
+                }
+            }
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            if (this.next.isCancelled()) {
+                return;
+            }
+
+            final Context previous = null == this.context ? null : this.context.attach();
+
+            try {
+                if (null != this.context && this.context.reject(this.next)) {
+                    return;
+                }
+
+                if (FROM == this.kind) {
+                    // the source might be a primitive promise of another type
+                    ((IntPromise) this.next).complete(((ToIntFunction) this.function).applyAsInt(root.box()));
+                } else {
+                    apply(((IntPromise) root).value);
+                }
+            } catch (final Throwable e) {
+                this.next._reject(e);
+            } finally {
+                if (null != this.context) {
+                    this.context.detach(previous);
+                }
+            }
+        }
+
+        private void apply(final int value) throws Throwable {
+            switch (this.kind) {
+            case MAP:
+                ((IntPromise) this.next).complete(((IntUnaryOperator) this.function).applyAsInt(value));
+                break;
+            case MAP_TO_OBJ:
+                this.next._resolve(((IntFunction) this.function).apply(value));
+                break;
+            case ACCEPT:
+                ((IntConsumer) this.function).accept(value);
+                ((IntPromise) this.next).complete(value);
+                break;
+            default:
+                ((IntPromise) this.next).complete(value);
+                break;
+            }
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            if (!this.next.isCancelled()) {
+                this.next._reject(reason);
+            }
+        }
+
+        @Override
+        void dispose() {
+            this.function = null;
+        }
+    }
+
+    private static final class All {
+
+        static final AtomicIntegerFieldUpdater<All> PENDING = AtomicIntegerFieldUpdater.newUpdater(All.class, "pending");
+
+        final Promise<int[]> promise;
+
+        final int[] values;
+
+        volatile int pending;
+
+        All(final Promise<int[]> promise, final int[] values) {
+            this.promise = promise;
+            this.values = values;
+            this.pending = values.length;
+        }
+
+        void set(final int index, final int value) {
+            this.values[index] = value;
+
+            if (0 == PENDING.decrementAndGet(this)) {
+                this.promise._resolve(this.values);
+            }
+        }
+    }
+
+    private static final class Slot extends Subscriber<Integer, Void> {
+
+        final All all;
+
+        final int index;
+
+        Slot(final All all, final int index) {
+            this.all = all;
+            this.index = index;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final Integer value) {
+            try {
+                this.all.set(this.index, value);
+            } catch (final Throwable e) {
+                this.all.promise._reject(e);
+            }
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            this.all.set(this.index, ((IntPromise) root).value);
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.all.promise._reject(reason);
+        }
+
+        @Override
+        boolean isCancelled() {
+            return State.PENDING != this.all.promise.state();
+        }
+    }
+
+}
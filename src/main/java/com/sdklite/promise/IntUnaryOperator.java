@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation on a single {@code int} operand that produces a
+ * {@code int} result.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface IntUnaryOperator {
+
+    int applyAsInt(final int operand) throws Throwable;
+
+}
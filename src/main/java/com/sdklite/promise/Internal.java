@@ -1,9 +1,8 @@
 package com.sdklite.promise;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -14,32 +13,125 @@ final class Internal {
 
     private static final AtomicLong COUNTER = new AtomicLong(1);
 
-    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(NCPU + 1, new ThreadFactory() {
+    /**
+     * The built-in pool, each worker has a local LIFO deque for the tasks it
+     * forks, so a continuation scheduled from a worker is likely to run on the
+     * same core while the value it consumes is still hot, idle workers steal
+     * from the others, and workers are started on demand and retired after
+     * being idle for a while
+     */
+    private static final ForkJoinPool EXECUTOR = new ForkJoinPool(NCPU, new ForkJoinWorkerThreadFactory() {
         @Override
-        public Thread newThread(final Runnable r) {
-            return new Thread(r, "Promise#" + COUNTER.getAndIncrement());
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Promise#" + COUNTER.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
         }
-    });
+    }, null, false);
 
-    public static void setTimeout(final Runnable runnable) {
-        EXECUTOR.execute(runnable);
+    private static final Scheduler SCHEDULER = Scheduler.from(EXECUTOR);
+
+    private static volatile Scheduler scheduler = SCHEDULER;
+
+    /**
+     * Returns the scheduler backed by the built-in pool, regardless of the
+     * default scheduler
+     */
+    static Scheduler getPool() {
+        return SCHEDULER;
     }
 
-    public static void setTimeout(final Runnable runnable, final long delay) {
-        EXECUTOR.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+    /**
+     * Returns whether the current thread is a worker of the built-in pool
+     */
+    static boolean isPoolThread() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof ForkJoinWorkerThread && EXECUTOR == ((ForkJoinWorkerThread) thread).getPool();
     }
 
-    public static int size(final Iterable<?> iterable) {
-        if (iterable instanceof Collection) {
-            return ((Collection<?>) iterable).size();
-        }
+    public static Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public static void setScheduler(final Scheduler scheduler) {
+        Internal.scheduler = null != scheduler ? scheduler : SCHEDULER;
+    }
+
+    /**
+     * The installed instrumentation, read once per callback, and per pending
+     * promise while {@link #hooked}
+     */
+    static volatile Instrumentation instrumentation;
+
+    /**
+     * The installed leak detector, read once per pending promise while
+     * {@link #hooked}
+     */
+    static volatile LeakDetector leakDetector;
+
+    /**
+     * Whether an instrumentation or a leak detector is installed, so a
+     * pending promise costs a single volatile read while neither is
+     */
+    static volatile boolean hooked;
+
+    public static Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    public static synchronized void setInstrumentation(final Instrumentation instrumentation) {
+        Internal.instrumentation = instrumentation;
+        Internal.hooked = null != instrumentation || null != Internal.leakDetector;
+    }
+
+    static synchronized void setLeakDetector(final LeakDetector detector) {
+        Internal.leakDetector = detector;
+        Internal.hooked = null != detector || null != Internal.instrumentation;
+    }
+
+    private static final UnhandledRejectionHandler REJECTION_LOGGER = UnhandledRejectionHandler.logging(1, TimeUnit.MINUTES, true);
 
-        int n = 0;
+    private static volatile UnhandledRejectionHandler unhandledRejectionHandler = REJECTION_LOGGER;
 
-        for (final Iterator<?> i = iterable.iterator(); i.hasNext(); n++) {
-            ;
+    public static UnhandledRejectionHandler getUnhandledRejectionHandler() {
+        return unhandledRejectionHandler;
+    }
+
+    public static void setUnhandledRejectionHandler(final UnhandledRejectionHandler handler) {
+        Internal.unhandledRejectionHandler = null != handler ? handler : REJECTION_LOGGER;
+    }
+
+    public static int getQueueDepth() {
+        return (int) Math.min(Integer.MAX_VALUE, EXECUTOR.getQueuedTaskCount() + EXECUTOR.getQueuedSubmissionCount());
+    }
+
+    public static Scheduler scheduler(final Scheduler scheduler) {
+        return null != scheduler ? scheduler : Internal.scheduler;
+    }
+
+    public static void setTimeout(final Runnable runnable) {
+        MicrotaskQueue.enqueue(scheduler, runnable);
+    }
+
+    public static void setTimeout(final Scheduler scheduler, final Runnable runnable) {
+        MicrotaskQueue.enqueue(scheduler(scheduler), runnable);
+    }
+
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "Promise#Timer");
+            thread.setDaemon(true);
+            return thread;
         }
+    });
+
+    public static Timeout setTimeout(final Runnable runnable, final long delay) {
+        return setTimeout(null, runnable, delay);
+    }
 
-        return n;
+    public static Timeout setTimeout(final Scheduler scheduler, final Runnable runnable, final long delay) {
+        return TIMER.schedule(scheduler, runnable, delay);
     }
 }
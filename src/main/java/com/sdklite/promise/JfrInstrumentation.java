@@ -0,0 +1,123 @@
+package com.sdklite.promise;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits JFR events through {@code jdk.jfr.EventFactory}, which is looked up
+ * reflectively since this library targets Java 8, where the events API is not
+ * available at compile time. The long pending event is emitted on settlement,
+ * so the promises which never settle are left to the {@link LeakDetector}.
+ *
+ * @author johnsonlee
+ *
+ */
+final class JfrInstrumentation implements Instrumentation {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private final long slowCallback;
+
+    private final long longPending;
+
+    private final MethodHandle slowCallbackEvent;
+
+    private final MethodHandle longPendingEvent;
+
+    private final MethodHandle set;
+
+    private final MethodHandle commit;
+
+    JfrInstrumentation(final long slowCallback, final long longPending) {
+        this.slowCallback = slowCallback;
+        this.longPending = longPending;
+
+        try {
+            final Class<?> event = Class.forName("jdk.jfr.Event");
+            this.set = LOOKUP.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class));
+            this.commit = LOOKUP.findVirtual(event, "commit", MethodType.methodType(void.class));
+            this.slowCallbackEvent = factory("com.sdklite.promise.SlowCallback", "Slow Callback",
+                    "executionTime", long.class, "Execution Time", true,
+                    "queueTime", long.class, "Queue Time", true);
+            this.longPendingEvent = factory("com.sdklite.promise.LongPending", "Long Pending Promise",
+                    "pendingTime", long.class, "Pending Time", true,
+                    "state", String.class, "State", false);
+        } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedOperationException("JFR events are not supported by this JVM", e);
+        } catch (final Throwable t) {
+            throw new UnsupportedOperationException("JFR events are not available", t);
+        }
+    }
+
+    @Override
+    public void onSettled(final State state, final long nanos) {
+        if (nanos >= this.longPending) {
+            emit(this.longPendingEvent, nanos, state.name());
+        }
+    }
+
+    @Override
+    public void onCallback(final long waitNanos, final long runNanos) {
+        if (runNanos >= this.slowCallback) {
+            emit(this.slowCallbackEvent, runNanos, waitNanos);
+        }
+    }
+
+    private void emit(final MethodHandle factory, final Object field0, final Object field1) {
+        try {
+            final Object event = factory.invoke();
+            this.set.invoke(event, 0, field0);
+            this.set.invoke(event, 1, field1);
+            this.commit.invoke(event);
+        } catch (final Throwable t) {
+            // never fail the callback because of the recording
+        }
+    }
+
+    /**
+     * Registers an event type with the specified name, label and fields, each
+     * field is described by its name, type, label and whether it's a timespan
+     * in nanoseconds
+     *
+     * @return the handle to create a new event
+     */
+    private static MethodHandle factory(final String name, final String label, final Object... fields) throws Throwable {
+        final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        final MethodHandle annotation = LOOKUP.findConstructor(annotationElement, MethodType.methodType(void.class, Class.class, Object.class));
+        final MethodHandle descriptor = LOOKUP.findConstructor(valueDescriptor, MethodType.methodType(void.class, Class.class, String.class, List.class));
+
+        final List<Object> annotations = new ArrayList<Object>();
+        annotations.add(annotation.invoke(annotation("jdk.jfr.Name"), name));
+        annotations.add(annotation.invoke(annotation("jdk.jfr.Label"), label));
+        annotations.add(annotation.invoke(annotation("jdk.jfr.Category"), new String[] { "Promise" }));
+
+        final List<Object> descriptors = new ArrayList<Object>();
+        for (int i = 0; i < fields.length; i += 4) {
+            final List<Object> elements = new ArrayList<Object>();
+            elements.add(annotation.invoke(annotation("jdk.jfr.Label"), fields[i + 2]));
+
+            if (Boolean.TRUE.equals(fields[i + 3])) {
+                elements.add(annotation.invoke(annotation("jdk.jfr.Timespan"), "NANOSECONDS"));
+            }
+
+            descriptors.add(descriptor.invoke((Class<?>) fields[i + 1], (String) fields[i], (List<?>) elements));
+        }
+
+        final Object factory = LOOKUP.findStatic(eventFactory, "create", MethodType.methodType(eventFactory, List.class, List.class))
+                .invoke((List<?>) annotations, (List<?>) descriptors);
+        LOOKUP.findVirtual(eventFactory, "register", MethodType.methodType(void.class)).invoke(factory);
+        return LOOKUP.findVirtual(eventFactory, "newEvent", MethodType.methodType(Class.forName("jdk.jfr.Event"))).bindTo(factory);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation(final String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+}
@@ -0,0 +1,314 @@
+package com.sdklite.promise;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects the promises that never settle, e.g. an {@link Executor} which
+ * forgets to call {@code resolve}. A sample of the pending promises is tracked
+ * by weak references, a tracked promise is reported if it's garbage collected
+ * while it's still pending, or if it stays pending longer than the threshold.
+ * With a large sampling interval, the detector is cheap enough to run in
+ * production.
+ *
+ * <pre>
+ * LeakDetector.install(1000, 5, TimeUnit.MINUTES, true);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ */
+public final class LeakDetector {
+
+    private static final Logger LOGGER = Logger.getLogger(LeakDetector.class.getName());
+
+    /**
+     * The listener of the leaks detected
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called once for each leak detected
+         *
+         * @param leak
+         *            The leak detected
+         */
+        void onLeak(final Leak leak);
+
+    }
+
+    /**
+     * Represents a pending promise which was collected or has been pending
+     * longer than the threshold
+     */
+    public static final class Leak {
+
+        private final boolean collected;
+
+        private final long pendingNanos;
+
+        private final Throwable creationSite;
+
+        Leak(final boolean collected, final long pendingNanos, final Throwable creationSite) {
+            this.collected = collected;
+            this.pendingNanos = pendingNanos;
+            this.creationSite = creationSite;
+        }
+
+        /**
+         * Returns whether the promise was garbage collected while pending
+         *
+         * @return true if the promise was collected, false if it's still
+         *         pending after the threshold
+         */
+        public boolean isCollected() {
+            return this.collected;
+        }
+
+        /**
+         * Returns how long the promise has been pending when it's detected
+         *
+         * @param unit
+         *            The time unit of the returned duration
+         * @return the pending duration
+         */
+        public long getPendingTime(final TimeUnit unit) {
+            return unit.convert(this.pendingNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the stack trace where the promise was created
+         *
+         * @return the creation site, or {@code null} if the stack trace is
+         *         not captured
+         */
+        public Throwable getCreationSite() {
+            return this.creationSite;
+        }
+
+        @Override
+        public String toString() {
+            return (this.collected ? "Promise was garbage collected while pending" : "Promise is still pending")
+                    + " after " + getPendingTime(TimeUnit.MILLISECONDS) + " ms";
+        }
+    }
+
+    /**
+     * Installs a detector which logs the leaks with {@link java.util.logging}
+     *
+     * @param samplingInterval
+     *            Tracks 1 in {@code samplingInterval} pending promises, 1
+     *            tracks every promise
+     * @param threshold
+     *            The pending time after which a promise is reported
+     * @param unit
+     *            The time unit of the threshold
+     * @param stackTraces
+     *            Whether to capture the creation site of the tracked promises
+     * @return the installed detector
+     */
+    public static LeakDetector install(final int samplingInterval, final long threshold, final TimeUnit unit, final boolean stackTraces) {
+        return install(samplingInterval, threshold, unit, stackTraces, leak -> LOGGER.log(Level.WARNING, leak.toString(), leak.getCreationSite()));
+    }
+
+    /**
+     * Installs a detector which reports the leaks to the specified listener,
+     * the detector installed before is uninstalled
+     *
+     * @param samplingInterval
+     *            Tracks 1 in {@code samplingInterval} pending promises, 1
+     *            tracks every promise
+     * @param threshold
+     *            The pending time after which a promise is reported
+     * @param unit
+     *            The time unit of the threshold
+     * @param stackTraces
+     *            Whether to capture the creation site of the tracked promises
+     * @param listener
+     *            The listener of the leaks
+     * @return the installed detector
+     */
+    public static LeakDetector install(final int samplingInterval, final long threshold, final TimeUnit unit, final boolean stackTraces, final Listener listener) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("samplingInterval < 1");
+        }
+
+        if (null == listener) {
+            throw new NullPointerException("listener");
+        }
+
+        final LeakDetector detector = new LeakDetector(samplingInterval, unit.toNanos(threshold), stackTraces, listener);
+        Internal.setLeakDetector(detector);
+        detector.schedule();
+        return detector;
+    }
+
+    /**
+     * Uninstalls the installed detector, the promises tracked are no longer
+     * reported
+     */
+    public static void uninstall() {
+        Internal.setLeakDetector(null);
+    }
+
+    private final int samplingInterval;
+
+    private final long threshold;
+
+    private final boolean stackTraces;
+
+    private final Listener listener;
+
+    private final ReferenceQueue<Promise<?>> queue = new ReferenceQueue<Promise<?>>();
+
+    /**
+     * The trackers of the pending promises, which keeps the trackers
+     * reachable until they are reported or settled
+     */
+    private final Set<Tracker> trackers = ConcurrentHashMap.<Tracker> newKeySet();
+
+    private LeakDetector(final int samplingInterval, final long threshold, final boolean stackTraces, final Listener listener) {
+        this.samplingInterval = samplingInterval;
+        this.threshold = Math.max(0L, threshold);
+        this.stackTraces = stackTraces;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of the tracked promises which are still pending
+     *
+     * @return the number of the tracked promises
+     */
+    public int getTracked() {
+        return this.trackers.size();
+    }
+
+    /**
+     * Starts tracking the specified pending promise if it's sampled
+     *
+     * @return the subscriber to push onto the promise, or {@code null} if the
+     *         promise is not sampled
+     */
+    <V> Subscriber<V, Void> track(final Promise<V> promise) {
+        if (this.samplingInterval > 1 && 0 != ThreadLocalRandom.current().nextInt(this.samplingInterval)) {
+            return null;
+        }
+
+        final Tracker tracker = new Tracker(promise, this.queue, this.stackTraces ? new Throwable("Created at") : null);
+        this.trackers.add(tracker);
+        return new Untracker<V>(tracker);
+    }
+
+    private void schedule() {
+        final long period = Math.max(10L, Math.min(1000L, TimeUnit.NANOSECONDS.toMillis(this.threshold)));
+        Internal.setTimeout(this::sweep, period);
+    }
+
+    private void sweep() {
+        for (Reference<? extends Promise<?>> ref; null != (ref = this.queue.poll());) {
+            final Tracker tracker = (Tracker) ref;
+
+            if (this.trackers.remove(tracker)) {
+                report(new Leak(true, System.nanoTime() - tracker.createdAt, tracker.creationSite));
+            }
+        }
+
+        final long now = System.nanoTime();
+
+        for (final Tracker tracker : this.trackers) {
+            if (!tracker.reported && now - tracker.createdAt >= this.threshold) {
+                tracker.reported = true;
+                report(new Leak(false, now - tracker.createdAt, tracker.creationSite));
+            }
+        }
+
+        if (this == Internal.leakDetector) {
+            schedule();
+        } else {
+            this.trackers.clear();
+        }
+    }
+
+    private void report(final Leak leak) {
+        try {
+            this.listener.onLeak(leak);
+        } catch (final Throwable t) {
+            LOGGER.log(Level.WARNING, "Failed to report " + leak, t);
+        }
+    }
+
+    private final class Tracker extends WeakReference<Promise<?>> {
+
+        final long createdAt = System.nanoTime();
+
+        final Throwable creationSite;
+
+        /**
+         * Whether it's reported as long pending, accessed by the sweeping
+         * thread only
+         */
+        boolean reported;
+
+        Tracker(final Promise<?> promise, final ReferenceQueue<Promise<?>> queue, final Throwable creationSite) {
+            super(promise, queue);
+            this.creationSite = creationSite;
+        }
+
+        void settle() {
+            clear();
+            trackers.remove(this);
+        }
+    }
+
+    /**
+     * The subscriber which stops tracking the promise once it's settled
+     */
+    private static final class Untracker<V> extends Subscriber<V, Void> {
+
+        final Tracker tracker;
+
+        Untracker(final Tracker tracker) {
+            this.tracker = tracker;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final V value) {
+            this.tracker.settle();
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            this.tracker.settle();
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.tracker.settle();
+        }
+
+        @Override
+        boolean isCancelled() {
+            return true;
+        }
+
+        @Override
+        boolean handlesRejection() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation that accepts a single {@code long} argument and
+ * returns no result, it's the {@code long} specialization of {@link Consumer}.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface LongConsumer {
+
+    void accept(final long value) throws Throwable;
+
+}
@@ -0,0 +1,17 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that accepts a {@code long} argument and produces a
+ * result, it's the {@code long} specialization of {@link Function}.
+ * 
+ * @author johnsonlee
+ *
+ * @param <R>
+ *            the type of the result of the function
+ */
+@FunctionalInterface
+public interface LongFunction<R> {
+
+    R apply(final long value) throws Throwable;
+
+}
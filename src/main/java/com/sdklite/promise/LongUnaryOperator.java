@@ -0,0 +1,14 @@
+package com.sdklite.promise;
+
+/**
+ * Represents an operation on a single {@code long} operand that produces a
+ * {@code long} result.
+ * 
+ * @author johnsonlee
+ */
+@FunctionalInterface
+public interface LongUnaryOperator {
+
+    long applyAsLong(final long operand) throws Throwable;
+
+}
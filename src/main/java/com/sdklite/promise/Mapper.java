@@ -0,0 +1,190 @@
+package com.sdklite.promise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The state of {@link Promise#map(Iterable, Function, int)} and
+ * {@link Promise#each(Iterable, Function, int)}, the elements are pulled from
+ * the iterator only when an operation slot is available, the pulling is
+ * serialized by a work-in-progress counter, so the operations settled
+ * synchronously don't recurse.
+ *
+ * @author johnsonlee
+ *
+ */
+final class Mapper<T, R> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Mapper> WIP = AtomicIntegerFieldUpdater.newUpdater(Mapper.class, "wip");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Mapper> ACTIVE = AtomicIntegerFieldUpdater.newUpdater(Mapper.class, "active");
+
+    final Promise<Object> promise;
+
+    final Function<T, ? extends Thenable<R>> function;
+
+    final int concurrency;
+
+    /**
+     * The results preallocated for collections
+     */
+    final Object[] array;
+
+    /**
+     * The results of other iterables, guarded by itself
+     */
+    final ArrayList<Object> list;
+
+    /**
+     * Accessed by the draining thread only
+     */
+    private Iterator<T> iterator;
+
+    /**
+     * Accessed by the draining thread only
+     */
+    private int index;
+
+    volatile int wip;
+
+    /**
+     * The number of operations in flight
+     */
+    volatile int active;
+
+    volatile boolean done;
+
+    /**
+     * Create an instance
+     *
+     * @param promise
+     *            The promise to settle with the results
+     * @param iterable
+     *            The elements to map
+     * @param function
+     *            The function to start the operation of each element
+     * @param concurrency
+     *            The maximum number of operations in flight
+     * @param collect
+     *            Whether to collect the results
+     */
+    @SuppressWarnings("unchecked")
+    Mapper(final Promise<?> promise, final Iterable<T> iterable, final Function<T, ? extends Thenable<R>> function, final int concurrency, final boolean collect) {
+        this.promise = (Promise<Object>) promise;
+        this.iterator = iterable.iterator();
+        this.function = function;
+        this.concurrency = concurrency;
+        this.array = collect && iterable instanceof Collection ? new Object[((Collection<?>) iterable).size()] : null;
+        this.list = collect && null == this.array ? new ArrayList<Object>() : null;
+
+        promise.onCancel(() -> this.done = true);
+    }
+
+    void drain() {
+        if (0 != WIP.getAndIncrement(this)) {
+            return;
+        }
+
+        for (int missed = 1;;) {
+            pull();
+
+            if (null == this.iterator && 0 == this.active && !this.done) {
+                this.done = true;
+                this.promise._resolve(null != this.array ? Arrays.asList(this.array) : this.list);
+            }
+
+            if (0 == (missed = WIP.addAndGet(this, -missed))) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pull() {
+        final Iterator<T> iterator = this.iterator;
+
+        while (null != iterator && !this.done && this.active < this.concurrency) {
+            final int index = this.index;
+            final Promise<R> next;
+
+            try {
+                if (!iterator.hasNext()) {
+                    this.iterator = null;
+                    return;
+                }
+
+                final T element = iterator.next();
+
+                if (null != this.list) {
+                    synchronized (this.list) {
+                        this.list.add(null);
+                    }
+                }
+
+                this.index++;
+                ACTIVE.incrementAndGet(this);
+                next = Promise.resolve((Thenable<R>) this.function.apply(element));
+            } catch (final Throwable t) {
+                onRejected(t);
+                return;
+            }
+
+            next.subscribe(new Slot(index));
+        }
+    }
+
+    void onFulfilled(final int index, final Object value) {
+        if (null != this.array) {
+            this.array[index] = value;
+        } else if (null != this.list) {
+            synchronized (this.list) {
+                this.list.set(index, value);
+            }
+        }
+
+        ACTIVE.decrementAndGet(this);
+        drain();
+    }
+
+    void onRejected(final Throwable reason) {
+        if (!this.done) {
+            this.done = true;
+            this.promise._reject(reason);
+        }
+    }
+
+    final class Slot extends Subscriber<R, Void> {
+
+        final int index;
+
+        Slot(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        public void resolve(final R value) {
+            onFulfilled(this.index, value);
+        }
+
+        @Override
+        public void reject(final Throwable reason) {
+            onRejected(reason);
+        }
+
+        @Override
+        boolean isCancelled() {
+            return Mapper.this.done;
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.sdklite.promise;
+
+import java.util.ArrayDeque;
+
+/**
+ * The per-thread queue of continuations, a single task submitted to the
+ * {@link Scheduler} drains the queue in a loop, continuations enqueued while
+ * draining are appended to the queue instead of being submitted or executed
+ * recursively.
+ *
+ * @author johnsonlee
+ *
+ */
+final class MicrotaskQueue {
+
+    /**
+     * The maximum number of tasks executed by a single drain before yielding
+     * the worker thread to other tasks of the scheduler, unless the scheduler
+     * is a lane of {@link Priority} with its own budget
+     */
+    private static final int BUDGET = 1024;
+
+    private static final ThreadLocal<MicrotaskQueue> LOCAL = new ThreadLocal<MicrotaskQueue>() {
+        @Override
+        protected MicrotaskQueue initialValue() {
+            return new MicrotaskQueue();
+        }
+    };
+
+    /**
+     * The queue of the current thread while it's draining, so the threads
+     * which only enqueue or wait, e.g. virtual threads blocked in
+     * {@code await}, never allocate a queue
+     */
+    private static final ThreadLocal<MicrotaskQueue> DRAINING = new ThreadLocal<MicrotaskQueue>();
+
+    /**
+     * Returns the queue being drained by the current thread, or {@code null}
+     */
+    private static MicrotaskQueue draining() {
+        final MicrotaskQueue queue = DRAINING.get();
+        return null != queue && null != queue.scheduler ? queue : null;
+    }
+
+    /**
+     * Enqueues the specified task to be executed by the specified scheduler
+     *
+     * @param scheduler
+     *            The scheduler to execute the task
+     * @param task
+     *            The task to execute
+     */
+    static void enqueue(final Scheduler scheduler, final Runnable callback) {
+        final Instrumentation instrumentation = Internal.instrumentation;
+        final Runnable task = null == instrumentation ? callback : new Timed(callback, instrumentation);
+        final MicrotaskQueue queue = draining();
+
+        if (null != queue && (queue.scheduler == scheduler || Schedulers.DIRECT == scheduler)) {
+            queue.tasks.offer(task);
+        } else {
+            scheduler.execute(new Drain(scheduler, task, null));
+        }
+    }
+
+    /**
+     * Registers the specified task to be executed once the queue of the
+     * current thread runs out of tasks
+     *
+     * @param task
+     *            The task to execute
+     * @return {@code false} if the current thread is not draining a queue
+     */
+    static boolean onDrained(final Runnable task) {
+        final MicrotaskQueue queue = draining();
+
+        if (null == queue) {
+            return false;
+        }
+
+        queue.drained.offer(task);
+        return true;
+    }
+
+    /**
+     * Hands the tasks queued on the current thread over before it blocks, as
+     * the thread might be waiting for one of them. They are submitted to the
+     * scheduler being drained, or executed right away if it's the direct
+     * scheduler, as no other thread would execute them.
+     */
+    static void handOff() {
+        final MicrotaskQueue queue = draining();
+
+        if (null == queue || (queue.tasks.isEmpty() && queue.drained.isEmpty())) {
+            return;
+        }
+
+        final Scheduler scheduler = queue.scheduler;
+
+        if (Schedulers.DIRECT == scheduler) {
+            queue.drain(scheduler);
+        } else {
+            queue.resubmit(scheduler);
+        }
+    }
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+    /**
+     * The tasks to execute once {@link #tasks} is empty
+     */
+    private final ArrayDeque<Runnable> drained = new ArrayDeque<Runnable>();
+
+    /**
+     * The scheduler being drained on the current thread
+     */
+    private Scheduler scheduler;
+
+    private MicrotaskQueue() {
+    }
+
+    private void drain(final Scheduler scheduler) {
+        final int budget = budget(scheduler);
+
+        for (int i = 0; i < budget; i++) {
+            Runnable task = this.tasks.poll();
+            if (null == task && null == (task = this.drained.poll())) {
+                return;
+            }
+
+            run(task);
+        }
+
+        if (!this.tasks.isEmpty() || !this.drained.isEmpty()) {
+            this.scheduler = null;
+            resubmit(scheduler);
+        }
+    }
+
+    private static int budget(final Scheduler scheduler) {
+        if (Schedulers.DIRECT == scheduler) {
+            return Integer.MAX_VALUE;
+        }
+
+        if (scheduler instanceof PriorityDispatcher.LaneScheduler) {
+            return ((PriorityDispatcher.LaneScheduler) scheduler).priority.budget;
+        }
+
+        return BUDGET;
+    }
+
+    /**
+     * Submits the queued tasks to the specified scheduler as a single drain
+     */
+    private void resubmit(final Scheduler scheduler) {
+        final ArrayDeque<Runnable> rest = new ArrayDeque<Runnable>(this.tasks);
+        rest.addAll(this.drained);
+        this.tasks.clear();
+        this.drained.clear();
+        scheduler.execute(new Drain(scheduler, rest.poll(), rest));
+    }
+
+    private static void run(final Runnable task) {
+        try {
+            task.run();
+        } catch (final Throwable t) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    /**
+     * The task which reports its queue time and execution time to the
+     * {@link Instrumentation} installed when it was enqueued
+     */
+    private static final class Timed implements Runnable {
+
+        final Runnable task;
+        final Instrumentation instrumentation;
+        final long enqueuedAt = System.nanoTime();
+
+        Timed(final Runnable task, final Instrumentation instrumentation) {
+            this.task = task;
+            this.instrumentation = instrumentation;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+
+            try {
+                this.task.run();
+            } finally {
+                this.instrumentation.onCallback(start - this.enqueuedAt, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static final class Drain implements Runnable {
+
+        final Scheduler scheduler;
+        final Runnable first;
+        final ArrayDeque<Runnable> rest;
+
+        Drain(final Scheduler scheduler, final Runnable first, final ArrayDeque<Runnable> rest) {
+            this.scheduler = scheduler;
+            this.first = first;
+            this.rest = rest;
+        }
+
+        @Override
+        public void run() {
+            final MicrotaskQueue draining = draining();
+
+            if (null != draining) {
+                // executed synchronously by a drain, e.g. a direct scheduler
+                draining.tasks.offer(this.first);
+                if (null != this.rest) {
+                    draining.tasks.addAll(this.rest);
+                }
+                return;
+            }
+
+            final MicrotaskQueue queue = LOCAL.get();
+            queue.scheduler = this.scheduler;
+            DRAINING.set(queue);
+
+            try {
+                MicrotaskQueue.run(this.first);
+                if (null != this.rest) {
+                    queue.tasks.addAll(this.rest);
+                }
+                queue.drain(this.scheduler);
+            } finally {
+                queue.scheduler = null;
+                DRAINING.set(null);
+            }
+        }
+    }
+
+}
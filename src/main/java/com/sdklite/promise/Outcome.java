@@ -0,0 +1,68 @@
+package com.sdklite.promise;
+
+/**
+ * Represents the settled state of a promise passed to
+ * {@link Promise#allSettled(Iterable)}
+ * 
+ * @author johnsonlee
+ *
+ * @param <V>
+ *            The type of value
+ */
+public final class Outcome<V> {
+
+    private final boolean fulfilled;
+
+    private final V value;
+
+    private final Throwable reason;
+
+    Outcome(final boolean fulfilled, final V value, final Throwable reason) {
+        this.fulfilled = fulfilled;
+        this.value = value;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns whether the promise was fulfilled
+     * 
+     * @return true if the promise was fulfilled
+     */
+    public boolean isFulfilled() {
+        return this.fulfilled;
+    }
+
+    /**
+     * Returns whether the promise was rejected
+     * 
+     * @return true if the promise was rejected
+     */
+    public boolean isRejected() {
+        return !this.fulfilled;
+    }
+
+    /**
+     * Returns the fulfilled value
+     * 
+     * @return the fulfilled value, or {@code null} if the promise was rejected
+     */
+    public V getValue() {
+        return this.value;
+    }
+
+    /**
+     * Returns the rejected reason
+     * 
+     * @return the rejected reason, or {@code null} if the promise was
+     *         fulfilled
+     */
+    public Throwable getReason() {
+        return this.reason;
+    }
+
+    @Override
+    public String toString() {
+        return isFulfilled() ? "fulfilled: " + this.value : "rejected: " + this.reason;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The priority class of a chain of promises. Each priority is a lane with its
+ * own queue in front of the built-in pool, the lanes are served by weighted
+ * round robin, so the latency critical callbacks overtake the bulk ones
+ * without starving them: while all lanes are backlogged, each lane gets a
+ * share of the threads in proportion to its weight. The bulk lane also gives
+ * its worker back after a shorter run of continuations, so a critical task
+ * doesn't wait long behind the bulk chains being drained.
+ *
+ * <p>
+ * The priority is assigned by creating a promise with the
+ * {@linkplain #scheduler() scheduler} of the lane, and it's inherited through
+ * {@code then} like any other scheduler:
+ * </p>
+ *
+ * <pre>
+ * new Promise&lt;Row&gt;(executor, Priority.BULK.scheduler()).then(row -&gt; ...);   // bulk as well
+ * request.withPriority(Priority.CRITICAL).then(response -&gt; ...);
+ * </pre>
+ *
+ * The promises created without a scheduler are not queued by any lane, unless
+ * a lane is made the {@linkplain Scheduler#setDefault(Scheduler) default}.
+ *
+ * @author johnsonlee
+ *
+ */
+public enum Priority {
+
+    /**
+     * The interactive requests whose tail latency matters
+     */
+    CRITICAL(16, 1024),
+
+    /**
+     * The regular work
+     */
+    NORMAL(4, 1024),
+
+    /**
+     * The background work such as backfills and batch jobs
+     */
+    BULK(1, 32),
+
+    ;
+
+    final int weight;
+
+    /**
+     * The maximum number of continuations executed by a single drain of this
+     * lane before the worker goes back to the dispatcher, so a backlog of
+     * bulk chains can't hold all workers for long
+     */
+    final int budget;
+
+    private final Scheduler scheduler;
+
+    private Priority(final int weight, final int budget) {
+        this.weight = weight;
+        this.budget = budget;
+        this.scheduler = new PriorityDispatcher.LaneScheduler(this);
+    }
+
+    /**
+     * Returns the scheduler of this lane
+     *
+     * @return the scheduler which queues tasks in this lane
+     */
+    public Scheduler scheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Returns the number of tasks waiting in this lane
+     */
+    public int getQueued() {
+        return PriorityDispatcher.lane(this).getQueued();
+    }
+
+    /**
+     * Returns the number of tasks dispatched from this lane
+     */
+    public long getDispatched() {
+        return PriorityDispatcher.lane(this).getDispatched();
+    }
+
+    /**
+     * Returns the total time tasks of this lane waited before being
+     * dispatched
+     *
+     * @param unit
+     *            The time unit of the result
+     * @return the total queue time
+     */
+    public long getWaitTime(final TimeUnit unit) {
+        return unit.convert(PriorityDispatcher.lane(this).getWaitNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the percentile of the time tasks of this lane waited before
+     * being dispatched, in power of 2 nanosecond buckets
+     *
+     * @param percentile
+     *            The percentile in (0, 1], e.g. 0.99
+     * @param unit
+     *            The time unit of the result
+     * @return the upper bound of the bucket containing the percentile, or 0
+     *         if nothing has been dispatched
+     */
+    public long getWaitTime(final double percentile, final TimeUnit unit) {
+        if (!(percentile > 0 && percentile <= 1)) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+
+        return unit.convert(PriorityDispatcher.lane(this).getWaitNanos(percentile), TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.sdklite.promise;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the lanes of {@link Priority} on the built-in pool, every task queued
+ * in a lane submits a single dispatch to the pool, and each dispatch runs the
+ * head of the lane chosen by a weighted round robin ticket, falling back to
+ * the other lanes in priority order if that lane is empty, so the pool never
+ * idles while any lane has work.
+ *
+ * @author johnsonlee
+ *
+ */
+final class PriorityDispatcher {
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static final Lane[] LANES = new Lane[PRIORITIES.length];
+
+    /**
+     * The lane of each slot of a round, each lane owns as many slots as its
+     * weight, interleaved so that a lane with a small weight is not served in
+     * a burst
+     */
+    private static final int[] ROUND;
+
+    private static final AtomicLong TICKET = new AtomicLong();
+
+    private static final Runnable DISPATCH = PriorityDispatcher::dispatch;
+
+    static {
+        int total = 0;
+
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            LANES[i] = new Lane();
+            total += PRIORITIES[i].weight;
+        }
+
+        ROUND = new int[total];
+
+        final int[] credits = new int[PRIORITIES.length];
+        for (int slot = 0; slot < total; slot++) {
+            // smooth weighted round robin
+            int best = 0;
+
+            for (int i = 0; i < PRIORITIES.length; i++) {
+                credits[i] += PRIORITIES[i].weight;
+                if (credits[i] > credits[best]) {
+                    best = i;
+                }
+            }
+
+            credits[best] -= total;
+            ROUND[slot] = best;
+        }
+    }
+
+    static Lane lane(final Priority priority) {
+        return LANES[priority.ordinal()];
+    }
+
+    private static void dispatch() {
+        final int preferred = ROUND[(int) (TICKET.getAndIncrement() % ROUND.length)];
+        Task task = LANES[preferred].poll();
+
+        for (int i = 0; null == task && i < LANES.length; i++) {
+            task = LANES[i].poll();
+        }
+
+        if (null != task) {
+            task.run();
+        }
+    }
+
+    /**
+     * The scheduler of a lane
+     */
+    static final class LaneScheduler implements Scheduler {
+
+        final Priority priority;
+
+        LaneScheduler(final Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            LANES[this.priority.ordinal()].offer(new Task(task));
+            Internal.getPool().execute(DISPATCH);
+        }
+
+        @Override
+        public String toString() {
+            return "PriorityScheduler[" + this.priority + "]";
+        }
+    }
+
+    static final class Task {
+
+        final Runnable task;
+
+        final long enqueuedAt = System.nanoTime();
+
+        Lane lane;
+
+        Task(final Runnable task) {
+            this.task = task;
+        }
+
+        void run() {
+            this.lane.onDispatched(System.nanoTime() - this.enqueuedAt);
+
+            try {
+                this.task.run();
+            } catch (final Throwable t) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+    }
+
+    static final class Lane {
+
+        /**
+         * The number of buckets of the wait time histogram, the bucket i
+         * counts the wait times in [2^i, 2^(i + 1)) nanoseconds
+         */
+        private static final int BUCKETS = 64;
+
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<Task>();
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final LongAdder dispatched = new LongAdder();
+
+        private final LongAdder waitNanos = new LongAdder();
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void offer(final Task task) {
+            task.lane = this;
+            this.queued.incrementAndGet();
+            this.queue.offer(task);
+        }
+
+        Task poll() {
+            final Task task = this.queue.poll();
+
+            if (null != task) {
+                this.queued.decrementAndGet();
+            }
+
+            return task;
+        }
+
+        void onDispatched(final long nanos) {
+            this.dispatched.increment();
+            this.waitNanos.add(nanos);
+            this.histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1L, nanos)));
+        }
+
+        int getQueued() {
+            return Math.max(0, this.queued.get());
+        }
+
+        long getDispatched() {
+            return this.dispatched.sum();
+        }
+
+        long getWaitNanos() {
+            return this.waitNanos.sum();
+        }
+
+        long getWaitNanos(final double percentile) {
+            final long[] counts = new long[BUCKETS];
+            long total = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts[i] = this.histogram.get(i);
+            }
+
+            if (0 == total) {
+                return 0L;
+            }
+
+            final long rank = (long) Math.ceil(percentile * total);
+            long sum = 0;
+
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                if ((sum += counts[i]) >= rank) {
+                    return 1L << (i + 1);
+                }
+            }
+
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private PriorityDispatcher() {
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber pushed onto a promise at creation while an
+ * {@link Instrumentation} is installed, it's notified on the settling thread
+ * and measures the time to settlement without any extra field in the promise
+ */
+final class Probe<V> extends Subscriber<V, Void> {
+
+    final Instrumentation instrumentation;
+
+    final long createdAt = System.nanoTime();
+
+    Probe(final Instrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.instrumentation.onSettled(State.FULFILLED, System.nanoTime() - this.createdAt);
+    }
+
+    @Override
+    void resolveUnboxed(final Promise<?> root) {
+        this.instrumentation.onSettled(State.FULFILLED, System.nanoTime() - this.createdAt);
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.instrumentation.onSettled(State.REJECTED, System.nanoTime() - this.createdAt);
+    }
+
+    @Override
+    void cancel(final Throwable reason) {
+        this.instrumentation.onSettled(State.CANCELLED, System.nanoTime() - this.createdAt);
+    }
+
+    @Override
+    boolean isCancelled() {
+        // not interested in the result, cancellation can go upstream
+        return true;
+    }
+
+    @Override
+    boolean handlesRejection() {
+        return false;
+    }
+
+}
@@ -1,16 +1,27 @@
 package com.sdklite.promise;
 
 import static com.sdklite.promise.Internal.setTimeout;
-import static com.sdklite.promise.Internal.size;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Represents the eventual completion (or failure) of an asynchronous operation,
@@ -35,12 +46,12 @@ public class Promise<V> implements Thenable<V> {
      *         <ul>
      *         <li>An already resolved {@link Promise} if the iterable passed is
      *         empty.</li>
-     *         <li>An asynchronously resolved {@link Promise} if the iterable
-     *         passed contains no promises.</li>
+     *         <li>An already resolved {@link Promise} if the iterable passed
+     *         contains no pending promises.</li>
      *         <li>A pending {@link Promise} in all other cases. This returned
-     *         promise is then resolved/rejected asynchronously (as soon as the
-     *         stack is empty) when all the promises in the given iterable have
-     *         resolved, or if any of the promises reject.</li>
+     *         promise is then resolved/rejected on the thread that settles the
+     *         last promise in the given iterable, or the first promise that
+     *         rejects.</li>
      *         </ul>
      */
     public static Promise<Object[]> all(final Object... iterable) {
@@ -61,12 +72,12 @@ public class Promise<V> implements Thenable<V> {
      *         <ul>
      *         <li>An already resolved {@link Promise} if the iterable passed is
      *         empty.</li>
-     *         <li>An asynchronously resolved {@link Promise} if the iterable
-     *         passed contains no promises.</li>
+     *         <li>An already resolved {@link Promise} if the iterable passed
+     *         contains no pending promises.</li>
      *         <li>A pending {@link Promise} in all other cases. This returned
-     *         promise is then resolved/rejected asynchronously (as soon as the
-     *         stack is empty) when all the promises in the given iterable have
-     *         resolved, or if any of the promises reject.</li>
+     *         promise is then resolved/rejected on the thread that settles the
+     *         last promise in the given iterable, or the first promise that
+     *         rejects.</li>
      *         </ul>
      */
     public static <T> Promise<T[]> all(final Class<T> type, final Object... iterable) {
@@ -85,12 +96,12 @@ public class Promise<V> implements Thenable<V> {
      *         <ul>
      *         <li>An already resolved {@link Promise} if the iterable passed is
      *         empty.</li>
-     *         <li>An asynchronously resolved {@link Promise} if the iterable
-     *         passed contains no promises.</li>
+     *         <li>An already resolved {@link Promise} if the iterable passed
+     *         contains no pending promises.</li>
      *         <li>A pending {@link Promise} in all other cases. This returned
-     *         promise is then resolved/rejected asynchronously (as soon as the
-     *         stack is empty) when all the promises in the given iterable have
-     *         resolved, or if any of the promises reject.</li>
+     *         promise is then resolved/rejected on the thread that settles the
+     *         last promise in the given iterable, or the first promise that
+     *         rejects.</li>
      *         </ul>
      */
     public static Promise<Object[]> all(final Iterable<?> iterable) {
@@ -111,201 +122,1531 @@ public class Promise<V> implements Thenable<V> {
      *         <ul>
      *         <li>An already resolved {@link Promise} if the iterable passed is
      *         empty.</li>
-     *         <li>An asynchronously resolved {@link Promise} if the iterable
-     *         passed contains no promises.</li>
+     *         <li>An already resolved {@link Promise} if the iterable passed
+     *         contains no pending promises.</li>
      *         <li>A pending {@link Promise} in all other cases. This returned
-     *         promise is then resolved/rejected asynchronously (as soon as the
-     *         stack is empty) when all the promises in the given iterable have
-     *         resolved, or if any of the promises reject.</li>
+     *         promise is then resolved/rejected on the thread that settles the
+     *         last promise in the given iterable, or the first promise that
+     *         rejects.</li>
      *         </ul>
      */
     public static <T> Promise<T[]> all(final Class<T> type, final Iterable<?> args) {
+        return all(type, args, false);
+    }
+
+    /**
+     * Returns a single {@link Promise} that resolves when all of the promises
+     * in the iterable argument have resolved, the iterable is traversed only
+     * once, non-promise elements and settled promises are consumed inline.
+     * Once the returned promise is settled, the remaining inputs are no
+     * longer tracked.
+     * 
+     * @param type
+     *            The the value component type of returned {@link Promise}.
+     * @param args
+     *            An iterable object such as an Array or Collection.
+     * @param cancel
+     *            Whether to drop the interest in the pending inputs once any
+     *            of them rejects or the returned promise is cancelled, an
+     *            input is cancelled unless it has other consumers
+     * @return a {@link Promise} that is resolved with the values in the order
+     *         of the iterable, or rejected with the reason of the first
+     *         promise that rejects
+     */
+    public static <T> Promise<T[]> all(final Class<T> type, final Iterable<?> args, final boolean cancel) {
         if (null == args) {
             return Promise.resolve();
         }
 
-        final Iterator<?> i = args.iterator();
-        if (!i.hasNext()) {
-            return Promise.resolve((T[]) Array.newInstance(type, 0));
+        final Object[] inputs = Aggregate.toArray(args);
+        if (0 == inputs.length) {
+            return Object.class == type ? (Promise<T[]>) EMPTY_ARRAY : Promise.resolve((T[]) Array.newInstance(type, 0));
+        }
+
+        final Object[] results = Object.class == type ? new Object[inputs.length] : (Object[]) Array.newInstance(type, inputs.length);
+        final Promise<T[]> promise = new Promise<T[]>();
+        new Aggregate<T[]>(Aggregate.ALL, promise, inputs, results, cancel).start();
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} that resolves after all of the promises in
+     * the array argument have either fulfilled or rejected
+     * 
+     * @param iterable
+     *            An array.
+     * @return a {@link Promise} that is resolved with the outcomes in the
+     *         order of the array
+     */
+    public static Promise<Outcome<Object>[]> allSettled(final Object... iterable) {
+        return allSettled(Arrays.asList(iterable));
+    }
+
+    /**
+     * Returns a {@link Promise} that resolves after all of the promises in
+     * the iterable argument have either fulfilled or rejected, it never
+     * rejects unless the iterable is {@code null}
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @return a {@link Promise} that is resolved with the outcomes in the
+     *         order of the iterable, or rejected with a
+     *         {@link NullPointerException} if the iterable is {@code null}
+     */
+    public static <T> Promise<Outcome<T>[]> allSettled(final Iterable<?> iterable) {
+        if (null == iterable) {
+            return Promise.reject(new NullPointerException("iterable"));
+        }
+
+        final Object[] inputs = Aggregate.toArray(iterable);
+        final Promise<Outcome<T>[]> promise = new Promise<Outcome<T>[]>();
+
+        if (0 == inputs.length) {
+            promise._resolve(new Outcome[0]);
+        } else {
+            new Aggregate<Outcome<T>[]>(Aggregate.ALL_SETTLED, promise, inputs, new Outcome[inputs.length], false).start();
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} that fulfills as soon as any of the promises
+     * in the array argument fulfills
+     * 
+     * @param iterable
+     *            An array.
+     * @return a {@link Promise} that is resolved with the value of the first
+     *         promise that fulfills, or rejected with an
+     *         {@link AggregateException} if all of them reject
+     */
+    public static <T> Promise<T> any(final Object... iterable) {
+        return any(Arrays.asList(iterable), false);
+    }
+
+    /**
+     * Returns a {@link Promise} that fulfills as soon as any of the promises
+     * in the iterable argument fulfills
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @return a {@link Promise} that is resolved with the value of the first
+     *         promise that fulfills, or rejected with an
+     *         {@link AggregateException} if all of them reject
+     */
+    public static <T> Promise<T> any(final Iterable<?> iterable) {
+        return any(iterable, false);
+    }
+
+    /**
+     * Returns a {@link Promise} that fulfills as soon as any of the promises
+     * in the iterable argument fulfills
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @param cancel
+     *            Whether to drop the interest in the losing inputs once the
+     *            returned promise is settled or cancelled, an input is
+     *            cancelled unless it has other consumers
+     * @return a {@link Promise} that is resolved with the value of the first
+     *         promise that fulfills, or rejected with an
+     *         {@link AggregateException} if all of them reject, including the
+     *         case that the iterable is empty, or with a
+     *         {@link NullPointerException} if the iterable is {@code null}
+     */
+    public static <T> Promise<T> any(final Iterable<?> iterable, final boolean cancel) {
+        if (null == iterable) {
+            return Promise.reject(new NullPointerException("iterable"));
+        }
+
+        final Object[] inputs = Aggregate.toArray(iterable);
+        final Promise<T> promise = new Promise<T>();
+
+        if (0 == inputs.length) {
+            promise._reject(new AggregateException("No promise was passed"));
+        } else {
+            new Aggregate<T>(Aggregate.ANY, promise, inputs, new Throwable[inputs.length], cancel).start();
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} that settles as soon as any of the promises in
+     * the array argument settles
+     * 
+     * @param iterable
+     *            An array.
+     * @return a {@link Promise} that adopts the state of the first promise
+     *         that settles
+     */
+    public static <T> Promise<T> race(final Object... iterable) {
+        return race(Arrays.asList(iterable), false);
+    }
+
+    /**
+     * Returns a {@link Promise} that settles as soon as any of the promises in
+     * the iterable argument settles
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @return a {@link Promise} that adopts the state of the first promise
+     *         that settles
+     */
+    public static <T> Promise<T> race(final Iterable<?> iterable) {
+        return race(iterable, false);
+    }
+
+    /**
+     * Returns a {@link Promise} that settles as soon as any of the promises in
+     * the iterable argument settles
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @param cancel
+     *            Whether to drop the interest in the losing inputs once the
+     *            returned promise is settled or cancelled, an input is
+     *            cancelled unless it has other consumers
+     * @return a {@link Promise} that adopts the state of the first promise
+     *         that settles, it stays pending forever if the iterable is empty,
+     *         or it's rejected with a {@link NullPointerException} if the
+     *         iterable is {@code null}
+     */
+    public static <T> Promise<T> race(final Iterable<?> iterable, final boolean cancel) {
+        if (null == iterable) {
+            return Promise.reject(new NullPointerException("iterable"));
+        }
+
+        final Object[] inputs = Aggregate.toArray(iterable);
+        final Promise<T> promise = new Promise<T>();
+
+        if (inputs.length > 0) {
+            new Aggregate<T>(Aggregate.RACE, promise, inputs, inputs, cancel).start();
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a stream of the values of the promises in the iterable argument
+     * in the order they are fulfilled, so that each value can be processed as
+     * soon as it's available, the consumed values are not retained
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection, which is traversed
+     *            when the stream is consumed
+     * @return a stream of the values in completion order
+     */
+    public static <T> Completions<T> stream(final Iterable<?> iterable) {
+        if (null == iterable) {
+            throw new NullPointerException("iterable");
+        }
+
+        return new Completions<T>(iterable);
+    }
+
+    /**
+     * Delivers the values of the promises in the iterable argument to the
+     * specified consumer in the order they are fulfilled, the consumer is
+     * never called concurrently
+     * 
+     * @param iterable
+     *            An iterable object such as a Collection.
+     * @param consumer
+     *            The consumer to accept each value
+     * @return a {@link Promise} that is resolved after all values have been
+     *         consumed, or rejected with the reason of the first input that
+     *         rejects or the error thrown by the consumer
+     */
+    public static <T> Promise<Void> stream(final Iterable<?> iterable, final Consumer<T> consumer) {
+        return Promise.<T>stream(iterable).forEach(consumer);
+    }
+
+    /**
+     * Maps the elements of the specified iterable with at most
+     * {@code concurrency} operations in flight, the elements are pulled from
+     * the iterator lazily when an operation settles, so the memory is bounded
+     * by the concurrency rather than the number of elements, except for the
+     * collected results.
+     * 
+     * @param iterable
+     *            The elements to map, the iterator is only accessed by one
+     *            thread at a time
+     * @param function
+     *            The function to start the operation of each element
+     * @param concurrency
+     *            The maximum number of operations in flight
+     * @return a {@link Promise} that is resolved with the results in the order
+     *         of the iterable, or rejected with the reason of the first
+     *         operation that fails, no more elements are pulled after that
+     */
+    public static <T, R> Promise<List<R>> map(final Iterable<T> iterable, final Function<T, ? extends Thenable<R>> function, final int concurrency) {
+        return bounded(iterable, function, concurrency, true);
+    }
+
+    /**
+     * Runs the operation of each element of the specified iterable with at
+     * most {@code concurrency} operations in flight without collecting the
+     * results, the elements are pulled from the iterator lazily, so the memory
+     * is bounded by the concurrency, the function can stream the results into
+     * a sink by itself.
+     * 
+     * @param iterable
+     *            The elements to iterate, the iterator is only accessed by one
+     *            thread at a time
+     * @param function
+     *            The function to start the operation of each element
+     * @param concurrency
+     *            The maximum number of operations in flight
+     * @return a {@link Promise} that is resolved when all operations have
+     *         fulfilled, or rejected with the reason of the first operation
+     *         that fails
+     */
+    public static <T> Promise<Void> each(final Iterable<T> iterable, final Function<T, ? extends Thenable<?>> function, final int concurrency) {
+        return bounded(iterable, (Function<T, Thenable<Object>>) (Function<T, ?>) function, concurrency, false);
+    }
+
+    private static <T, R, U> Promise<U> bounded(final Iterable<T> iterable, final Function<T, ? extends Thenable<R>> function, final int concurrency, final boolean collect) {
+        if (null == function) {
+            throw new NullPointerException("function");
+        }
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency < 1");
+        }
+
+        final Promise<U> promise = new Promise<U>();
+        new Mapper<T, R>(promise, iterable, function, concurrency, collect).drain();
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} object that is resolved with {@code null} value
+     * 
+     * @return a shared {@link Promise} that is already resolved with
+     *         {@code null} value
+     */
+    public static <T> Promise<T> resolve() {
+        return (Promise<T>) NULL;
+    }
+
+    /**
+     * Returns a {@link Promise} object that is resolved with the specific
+     * value, the returned promise is settled synchronously, {@code null} and
+     * {@link Boolean} values share a single instance
+     * 
+     * @param value
+     *            The to be resolved
+     * @return a {@link Promise} that is resolved with the specific value
+     */
+    public static <T> Promise<T> resolve(final T value) {
+        if (null == value) {
+            return (Promise<T>) NULL;
+        }
+
+        if (value instanceof Boolean) {
+            return (Promise<T>) (((Boolean) value).booleanValue() ? TRUE : FALSE);
+        }
+
+        if (value instanceof Thenable) {
+            return resolve((Thenable<T>) value);
+        }
+
+        return new Promise<T>(null, value);
+    }
+
+    /**
+     * Returns a {@link Promise} instance with the specified thenable
+     * 
+     * @param thenable
+     *            The thenable to resolve
+     * @return a {@link Promise} will "follow" the thenable, adopting its eventual state.
+     */
+    public static <T> Promise<T> resolve(final Thenable<T> thenable) {
+        if (thenable instanceof Promise) {
+            return (Promise<T>) thenable;
+        }
+
+        final Promise<T> p = new Promise<T>();
+        p._resolve(thenable);
+        return p;
+    }
+
+    /**
+     * Returns a {@link Promise} that follows the specified
+     * {@link CompletionStage}, the promise is settled on the thread which
+     * completes the stage, or synchronously if the stage is a completed
+     * {@link CompletableFuture}
+     * 
+     * @param stage
+     *            The completion stage to follow
+     * @return a {@link Promise} adopting the eventual state of the stage,
+     *         cancellation of the stage rejects the promise with a
+     *         {@link java.util.concurrent.CancellationException}
+     */
+    public static <T> Promise<T> from(final CompletionStage<T> stage) {
+        if (stage instanceof CompletableFuture) {
+            final CompletableFuture<T> future = (CompletableFuture<T>) stage;
+
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                return resolve(future.getNow(null));
+            }
+        }
+
+        final Promise<T> promise = new Promise<T>();
+
+        if (stage instanceof Future) {
+            promise.onCancel(() -> ((Future<?>) stage).cancel(false));
+        }
+
+        stage.whenComplete((v, e) -> {
+            if (null == e) {
+                promise._resolve(v);
+            } else {
+                promise._reject(e instanceof CompletionException && null != e.getCause() ? e.getCause() : e);
+            }
+        });
+
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} that is resolved with {@code null} value after
+     * the specified delay
+     * 
+     * @param delay
+     *            The delay in milliseconds
+     * @return a {@link Promise} resolved after the delay
+     */
+    public static <T> Promise<T> delay(final long delay) {
+        final Promise<T> promise = new Promise<T>();
+        promise.onCancel(Internal.setTimeout(() -> promise._resolve((T) null), delay)::cancel);
+        return promise;
+    }
+
+    /**
+     * Returns a {@link Promise} of the operation supplied by the specified
+     * supplier, if the operation hasn't fulfilled within the delay, a
+     * duplicate attempt is started, the first fulfilled attempt wins and the
+     * others are cancelled, see {@link Hedger} for adaptive delays and budgets
+     * 
+     * @param supplier
+     *            The supplier to start an attempt of the operation
+     * @param delay
+     *            The delay in milliseconds before starting the next attempt
+     * @param maxAttempts
+     *            The maximum number of attempts including the first one
+     * @return a {@link Promise} that is resolved with the value of the first
+     *         fulfilled attempt, or rejected with the reason of the last
+     *         attempt if all of them are rejected
+     */
+    public static <T> Promise<T> hedge(final Supplier<? extends Thenable<T>> supplier, final long delay, final int maxAttempts) {
+        return Hedger.builder().delay(delay, TimeUnit.MILLISECONDS).maxAttempts(maxAttempts).build().execute(supplier);
+    }
+
+    /**
+     * Returns a {@link Promise} of the specified blocking work, which runs on
+     * the {@linkplain BlockingScheduler#getDefault() default blocking
+     * scheduler}, while the callbacks of the returned promise run on the
+     * default scheduler
+     * 
+     * @param callable
+     *            The blocking work
+     * @return a {@link Promise} that is resolved with the result of the work,
+     *         or rejected with the exception it throws, or a
+     *         {@link RejectedExecutionException} if the blocking scheduler is
+     *         saturated
+     */
+    public static <T> Promise<T> supplyBlocking(final Callable<T> callable) {
+        return supplyBlocking(callable, BlockingScheduler.getDefault());
+    }
+
+    /**
+     * Returns a {@link Promise} of the specified blocking work, which runs on
+     * the specified scheduler, e.g. a {@link BlockingScheduler} or
+     * {@link Scheduler#virtual()}, while the callbacks of the returned promise
+     * run on the default scheduler
+     * 
+     * @param callable
+     *            The blocking work
+     * @param blocking
+     *            The scheduler to run the work
+     * @return a {@link Promise} that is resolved with the result of the work,
+     *         or rejected with the exception it throws, or a
+     *         {@link RejectedExecutionException} if the scheduler rejects it
+     */
+    public static <T> Promise<T> supplyBlocking(final Callable<T> callable, final Scheduler blocking) {
+        if (null == callable) {
+            throw new NullPointerException("callable");
+        }
+
+        final Promise<T> promise = new Promise<T>();
+        BlockingScheduler.submit(blocking, promise, callable::call, Context.capture(), true);
+        return promise;
+    }
+
+    /**
+     * Returns a Promise object that is rejected with the given reason.
+     * 
+     * @param reason
+     *            The reason why this Promise rejected.
+     * @return a {@link Promise} that is rejected with the given reason.
+     */
+    public static <T> Promise<T> reject(final Throwable reason) {
+        return new Promise<T>(null, new Failure(reason));
+    }
+
+    private static final Object NIL = new Object();
+
+    /**
+     * The state of a primitive promise fulfilled with the value stored in its
+     * own field, see {@link #box()}
+     */
+    static final Object UNBOXED = new Object();
+
+    private static final Failure CANCELLED = new Failure(new Cancellation());
+
+    /**
+     * The rejections to report on the next tick of the timer if they are
+     * still unhandled, a single timeout is armed for all of them
+     */
+    private static final Queue<Unhandled> UNHANDLED = new ConcurrentLinkedQueue<Unhandled>();
+
+    private static final AtomicBoolean UNHANDLED_ARMED = new AtomicBoolean();
+
+    private static final Promise<?> NULL = new Promise<Object>(null, NIL);
+
+    private static final Promise<?> TRUE = new Promise<Boolean>(null, Boolean.TRUE);
+
+    private static final Promise<?> FALSE = new Promise<Boolean>(null, Boolean.FALSE);
+
+    private static final Promise<?> EMPTY_ARRAY = new Promise<Object[]>(null, new Object[0]);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+
+    private final Scheduler scheduler;
+
+    /**
+     * The promise whose {@code then} created this promise, it's notified when
+     * this promise is cancelled and released once this promise is settled
+     */
+    private Promise<?> upstream;
+
+    /**
+     * The top of the subscriber stack while pending, the value once fulfilled
+     * ({@link #NIL} for {@code null}), a {@link Failure} once rejected, or the
+     * promise this promise is linked to
+     */
+    private volatile Object state;
+
+    /**
+     * Default constructor
+     */
+    public Promise() {
+        this((Scheduler) null);
+    }
+
+    /**
+     * Create an instance whose callbacks are executed by the specified
+     * scheduler
+     * 
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public Promise(final Scheduler scheduler) {
+        this.scheduler = scheduler;
+        instrument();
+    }
+
+    /**
+     * Create the root which takes over the subscribers of the specified root
+     * registered through the promises linked to it
+     */
+    private Promise(final Promise<V> detached) {
+        this.scheduler = detached.scheduler;
+        this.upstream = detached.upstream;
+    }
+
+    /**
+     * Create an already settled instance
+     */
+    Promise(final Scheduler scheduler, final Object state) {
+        this.scheduler = scheduler;
+        this.state = state;
+
+        final Instrumentation instrumentation = Internal.instrumentation;
+        if (null != instrumentation) {
+            instrumentation.onCreated();
+            instrumentation.onSettled(state instanceof Failure ? State.REJECTED : State.FULFILLED, 0L);
+        }
+
+        if (state instanceof Failure && CANCELLED != state) {
+            track((Failure) state);
+        }
+    }
+
+    /**
+     * Create an instance with an executor function
+     * 
+     * @param executor
+     *            The executor function
+     */
+    public Promise(final Executor<Consumer<V>, Consumer<Throwable>> executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Create an instance with an executor function and a scheduler
+     * 
+     * @param executor
+     *            The executor function
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public Promise(final Executor<Consumer<V>, Consumer<Throwable>> executor, final Scheduler scheduler) {
+        this.scheduler = scheduler;
+        instrument();
+
+        final Resolver<V> resolver = new Resolver<V>(this);
+
+        try {
+            executor.accept(resolver, resolver::reject);
+        } catch (final Throwable e) {
+            if (resolver.lock()) {
+                _reject(e);
+            }
+        }
+    }
+
+    /**
+     * Create an instance with a cancellable executor function, the hooks
+     * registered by the executor with {@code onCancel} are called if this
+     * promise is cancelled before it's settled
+     * 
+     * @param executor
+     *            The executor function
+     */
+    public Promise(final CancellableExecutor<Consumer<V>, Consumer<Throwable>, Consumer<Runnable>> executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Create an instance with a cancellable executor function and a scheduler
+     * 
+     * @param executor
+     *            The executor function
+     * @param scheduler
+     *            The scheduler to execute callbacks, {@code null} means the
+     *            {@linkplain Scheduler#getDefault() default scheduler}
+     */
+    public Promise(final CancellableExecutor<Consumer<V>, Consumer<Throwable>, Consumer<Runnable>> executor, final Scheduler scheduler) {
+        this.scheduler = scheduler;
+        instrument();
+
+        final Resolver<V> resolver = new Resolver<V>(this);
+
+        try {
+            executor.accept(resolver, resolver::reject, this::onCancel);
+        } catch (final Throwable e) {
+            if (resolver.lock()) {
+                _reject(e);
+            }
+        }
+    }
+
+    /**
+     * Reports the creation of this pending promise, and pushes a probe to
+     * report its settlement if an {@link Instrumentation} is installed, or to
+     * track it if it's sampled by the {@link LeakDetector}
+     */
+    private void instrument() {
+        if (!Internal.hooked) {
+            return;
+        }
+
+        final Instrumentation instrumentation = Internal.instrumentation;
+
+        if (null != instrumentation) {
+            instrumentation.onCreated();
+            this.state = new Probe<V>(instrumentation);
+        }
+
+        final LeakDetector detector = Internal.leakDetector;
+
+        if (null != detector) {
+            final Subscriber<V, Void> untracker = detector.track(this);
+
+            if (null != untracker) {
+                untracker.link = (Subscriber<?, ?>) this.state;
+                this.state = untracker;
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link Promise} that follows this promise, and whose callbacks
+     * are executed by the specified scheduler
+     * 
+     * @param scheduler
+     *            The scheduler to execute callbacks
+     * @return a {@link Promise} bound to the specified scheduler
+     */
+    public Promise<V> withScheduler(final Scheduler scheduler) {
+        return then((Consumer<V>) null, (Consumer<Throwable>) null, scheduler);
+    }
+
+    /**
+     * Returns a {@link Promise} that follows this promise, and whose callbacks
+     * are queued in the lane of the specified priority, the priority is
+     * inherited by the promises chained by {@code then}
+     * 
+     * @param priority
+     *            The priority of the callbacks
+     * @return a {@link Promise} bound to the scheduler of the priority
+     */
+    public Promise<V> withPriority(final Priority priority) {
+        return withScheduler(priority.scheduler());
+    }
+
+    @Override
+    public Promise<V> then(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected) {
+        return then(onFulfilled, onRejected, this.scheduler);
+    }
+
+    @Override
+    public <R> Promise<R> then(final Function<V, R> onFulfilled, final Function<Throwable, R> onRejected) {
+        return then(onFulfilled, onRejected, this.scheduler);
+    }
+
+    /**
+     * Appends fulfillment and rejection handlers to this promise, the handlers
+     * are executed by the specified scheduler
+     * 
+     * @param onFulfilled
+     *            The fulfillment handler
+     * @param onRejected
+     *            The rejection handler
+     * @param scheduler
+     *            The scheduler to execute the handlers, which is inherited by
+     *            the returned promise
+     * @return a new {@link Promise} resolving after the handler is called
+     */
+    public Promise<V> then(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected, final Scheduler scheduler) {
+        final Promise<V> root = root();
+        final Object state = root.state;
+
+        if (isSettled(state)) {
+            // nothing to call, the next promise shares the settled state
+            if (state instanceof Failure ? null == onRejected : null == onFulfilled) {
+                return new Promise<V>(scheduler, root.export(state));
+            }
+
+            // the caller allows the handler to run on the current thread,
+            // unless the deadline of the context has to be checked
+            if (Schedulers.DIRECT == scheduler && null == Context.capture()) {
+                final Promise<V> next = new Promise<V>(scheduler);
+
+                if (state instanceof Failure) {
+                    ((Failure) state).handled = true;
+                    _reject(next, onRejected, ((Failure) state).reason);
+                } else {
+                    _resolve(next, onFulfilled, root.valueOf(state));
+                }
+
+                return next;
+            }
+        }
+
+        final Promise<V> next = new Promise<V>(scheduler);
+        next.upstream = this;
+        subscribe(new ConsumerSubscriber<>(onFulfilled, onRejected, next));
+        return next;
+    }
+
+    /**
+     * Appends fulfillment and rejection handlers to this promise, the handlers
+     * are executed by the specified scheduler
+     * 
+     * @param onFulfilled
+     *            The fulfillment handler
+     * @param onRejected
+     *            The rejection handler
+     * @param scheduler
+     *            The scheduler to execute the handlers, which is inherited by
+     *            the returned promise
+     * @return a new {@link Promise} resolving to the return value of the
+     *         handler
+     */
+    public <R> Promise<R> then(final Function<V, R> onFulfilled, final Function<Throwable, R> onRejected, final Scheduler scheduler) {
+        final Promise<V> root = root();
+        final Object state = root.state;
+
+        if (isSettled(state)) {
+            // nothing to call, the next promise shares the settled state
+            if (state instanceof Failure ? null == onRejected : null == onFulfilled) {
+                return new Promise<R>(scheduler, root.export(state));
+            }
+
+            // the caller allows the handler to run on the current thread,
+            // unless the deadline of the context has to be checked
+            if (Schedulers.DIRECT == scheduler && null == Context.capture()) {
+                final Promise<R> next = new Promise<R>(scheduler);
+
+                if (state instanceof Failure) {
+                    ((Failure) state).handled = true;
+                    _reject(next, onRejected, ((Failure) state).reason);
+                } else {
+                    _resolve(next, onFulfilled, root.valueOf(state));
+                }
+
+                return next;
+            }
+        }
+
+        final Promise<R> next = new Promise<R>(scheduler);
+        next.upstream = this;
+        subscribe(new FunctionSubscriber<V, R>(onFulfilled, onRejected, next));
+        return next;
+    }
+
+    /**
+     * Appends a blocking fulfillment handler to this promise, the handler runs
+     * on the {@linkplain BlockingScheduler#getDefault() default blocking
+     * scheduler}, while the callbacks of the returned promise run on the
+     * scheduler of this promise
+     * 
+     * @param onFulfilled
+     *            The blocking fulfillment handler
+     * @return a new {@link Promise} resolving to the return value of the
+     *         handler, or rejected with the reason of this promise, or a
+     *         {@link RejectedExecutionException} if the scheduler rejects the
+     *         handler
+     */
+    public <R> Promise<R> thenBlocking(final Function<V, R> onFulfilled) {
+        return thenBlocking(onFulfilled, BlockingScheduler.getDefault());
+    }
+
+    /**
+     * Appends a blocking fulfillment handler to this promise, the handler runs
+     * on the specified scheduler, while the callbacks of the returned promise
+     * run on the scheduler of this promise
+     * 
+     * @param onFulfilled
+     *            The blocking fulfillment handler
+     * @param blocking
+     *            The scheduler to run the handler
+     * @return a new {@link Promise} resolving to the return value of the
+     *         handler, or rejected with the reason of this promise, or a
+     *         {@link RejectedExecutionException} if the scheduler rejects the
+     *         handler
+     */
+    public <R> Promise<R> thenBlocking(final Function<V, R> onFulfilled, final Scheduler blocking) {
+        if (null == onFulfilled) {
+            throw new NullPointerException("onFulfilled");
+        }
+
+        final Promise<R> next = new Promise<R>(this.scheduler);
+        next.upstream = this;
+        subscribe(new BlockingSubscriber<V, R>(onFulfilled, next, blocking));
+        return next;
+    }
+
+    /**
+     * Cancels this promise if it's still pending, the subscribers are rejected
+     * with a {@link CancellationException}, the hooks registered by the
+     * executor are called, and the promise this one is derived from by
+     * {@code then} is cancelled too once all of its subscribers are cancelled.
+     * If a promise adopted by this one is observed by other consumers, this
+     * promise is cancelled on its own, and the adopted one is left pending.
+     * 
+     * @return true if this promise is cancelled by this call
+     */
+    public boolean cancel() {
+        final Promise<V> root = root();
+        final Promise<?> upstream = root.upstream;
+
+        if (this == root && detach()) {
+            return true;
+        }
+
+        if (!root.settle(CANCELLED)) {
+            return false;
+        }
+
+        release(upstream);
+        return true;
+    }
+
+    /**
+     * Cancels this root on its own if any promise linked to it is observed by
+     * another consumer, the linked promises follow a new root, which takes
+     * over the subscribers registered through them
+     * 
+     * @return true if this root is detached from the promises linked to it
+     */
+    @SuppressWarnings("unchecked")
+    private boolean detach() {
+        for (;;) {
+            final Object state = this.state;
+
+            if (!(state instanceof Subscriber) || !isObserved((Subscriber<?, ?>) state, true)) {
+                return false;
+            }
+
+            final Promise<V> root = new Promise<V>(this);
+
+            if (!STATE.compareAndSet(this, state, new Detached(root))) {
+                continue;
+            }
+
+            this.upstream = null;
+
+            for (Subscriber<?, ?> head = reverse((Subscriber<?, ?>) state); null != head;) {
+                final Subscriber<V, ?> subscriber = (Subscriber<V, ?>) head;
+                head = subscriber.link;
+                subscriber.link = null;
+
+                if (subscriber instanceof Relay) {
+                    root.subscribe(subscriber);
+                } else {
+                    notify(subscriber, CANCELLED);
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether any of the specified subscribers is still interested in
+     * the result, only the ones registered through linked promises count if
+     * {@code relayed} is true
+     */
+    private static boolean isObserved(Subscriber<?, ?> subscriber, final boolean relayed) {
+        for (; null != subscriber; subscriber = subscriber.link) {
+            if ((!relayed || subscriber instanceof Relay) && !subscriber.isCancelled()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether this promise is cancelled
+     * 
+     * @return true if this promise is cancelled
+     */
+    public boolean isCancelled() {
+        return isCancellation(root().state);
+    }
+
+    /**
+     * Registers the hook to be called if this promise is cancelled
+     */
+    void onCancel(final Runnable hook) {
+        subscribe(new CancelHook<V>(hook));
+    }
+
+    /**
+     * Returns the state of this promise
+     */
+    State state() {
+        final Object state = root().state;
+
+        if (!isSettled(state)) {
+            return State.PENDING;
+        }
+
+        if (isCancellation(state)) {
+            return State.CANCELLED;
+        }
+
+        return state instanceof Failure ? State.REJECTED : State.FULFILLED;
+    }
+
+    /**
+     * Disposes the cancelled subscribers of the specified upstream promise,
+     * and cancels it if none of its subscribers is interested in the result
+     * any more, and so on up the chain
+     */
+    static void release(Promise<?> upstream) {
+        while (null != upstream) {
+            final Promise<?> root = upstream.root();
+            final Object state = root.state;
+
+            if (!(state instanceof Subscriber)) {
+                return;
+            }
+
+            boolean cancelled = true;
+
+            for (Subscriber<?, ?> subscriber = (Subscriber<?, ?>) state; null != subscriber; subscriber = subscriber.link) {
+                if (subscriber.isCancelled()) {
+                    subscriber.dispose();
+                } else {
+                    cancelled = false;
+                }
+            }
+
+            upstream = root.upstream;
+
+            if (!cancelled || !root.complete(state, CANCELLED)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link Promise} that follows this promise, but is rejected with
+     * a {@link TimeoutException} if this promise is not settled within the
+     * specified time
+     * 
+     * @param timeout
+     *            The timeout in milliseconds
+     * @return a {@link Promise} that settles no later than the timeout
+     */
+    public Promise<V> timeout(final long timeout) {
+        final Promise<V> root = root();
+
+        if (isSettled(root.state)) {
+            return withScheduler(this.scheduler);
+        }
+
+        final Promise<V> next = new Promise<V>(this.scheduler);
+        next.upstream = this;
+
+        // the rejection runs on the scheduler of this promise, the timer thread
+        // is shared by every timeout and must not run the subscribers
+        final Timeout handle = Internal.setTimeout(this.scheduler, () -> {
+            next._reject(new TimeoutException("Timed out after " + timeout + "ms"));
+        }, timeout);
+        subscribe(new TimeoutSubscriber<V>(next, handle));
+        return next;
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that is completed on the thread which
+     * settles this promise, without scheduling any callback
+     * 
+     * @return a {@link CompletableFuture} completed with the eventual state of
+     *         this promise
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<V> toCompletableFuture() {
+        final Promise<V> root = root();
+        final Object state = root.state;
+
+        if (isSettled(state)) {
+            final CompletableFuture<V> future = new CompletableFuture<V>();
+
+            if (state instanceof Failure) {
+                ((Failure) state).handled = true;
+                future.completeExceptionally(((Failure) state).reason);
+            } else {
+                future.complete(root.valueOf(state));
+            }
+
+            return future;
+        }
+
+        final CompletableFuture<V> future = new CompletableFuture<V>();
+        subscribe(new FutureSubscriber<V>(future));
+        future.whenComplete((v, e) -> {
+            if (future.isCancelled()) {
+                // the future is a downstream of this promise
+                release(this);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits if necessary for this promise to settle, and then returns its
+     * value. The calling thread is parked and woken up directly by the
+     * settling thread. The continuations queued on the calling thread are
+     * handed over to the scheduler before parking, so a callback can wait for
+     * another continuation.
+     * 
+     * @return the fulfilled value
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     * @throws ExecutionException
+     *             if this promise was rejected, the reason is the cause
+     */
+    public V await() throws InterruptedException, ExecutionException {
+        try {
+            return report(waitFor(false, 0L));
+        } catch (final TimeoutException e) {
+            throw new AssertionError(e);
         }
+    }
 
-        final int n = size(args);
-        final Promise<T[]> promise = new Promise<T[]>();
-        final AtomicInteger index = new AtomicInteger(0);
-        final AtomicInteger counter = new AtomicInteger(n);
-        final T[] results = (T[]) Array.newInstance(type, n);
+    /**
+     * Waits if necessary for at most the given time for this promise to
+     * settle, and then returns its value.
+     * 
+     * @param timeout
+     *            The maximum time to wait
+     * @param unit
+     *            The time unit of the timeout argument
+     * @return the fulfilled value
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     * @throws ExecutionException
+     *             if this promise was rejected, the reason is the cause
+     * @throws TimeoutException
+     *             if this promise is still pending after the wait timed out
+     */
+    public V await(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return report(waitFor(true, System.nanoTime() + unit.toNanos(timeout)));
+    }
 
-        args.forEach(arg -> {
-            final Promise<T> next = cast(arg);
-            final int idx = index.getAndIncrement();
+    /**
+     * Returns the value if this promise is fulfilled, else returns the given
+     * default value if this promise is still pending.
+     * 
+     * @param defaultValue
+     *            The value to return if this promise is pending
+     * @return the fulfilled value or the default value
+     * @throws CompletionException
+     *             if this promise was rejected, the reason is the cause
+     */
+    public V getNow(final V defaultValue) {
+        final Promise<V> root = root();
+        final Object state = root.state;
 
-            next.then(v -> {
-                try {
-                    results[idx] = v;
+        if (!isSettled(state)) {
+            return defaultValue;
+        }
 
-                    if (0 == counter.decrementAndGet()) {
-                        promise._resolve(results);
-                    }
-                } catch (final Throwable t) {
-                    promise._reject(t);
+        if (isCancellation(state)) {
+            throw (CancellationException) CANCELLED.reason;
+        }
+
+        if (state instanceof Failure) {
+            ((Failure) state).handled = true;
+            throw new CompletionException(((Failure) state).reason);
+        }
+
+        return root.valueOf(state);
+    }
+
+    private Object waitFor(final boolean timed, final long deadline) throws InterruptedException, TimeoutException {
+        Object state = root().state;
+
+        if (isSettled(state)) {
+            return state;
+        }
+
+        final Thread thread = Thread.currentThread();
+        final boolean managed = thread instanceof ForkJoinWorkerThread;
+        final Waiter<V> waiter = new Waiter<V>(thread);
+        subscribe(waiter);
+
+        // the continuations queued on this thread might be the ones it waits for
+        MicrotaskQueue.handOff();
+
+        try {
+            while (!isSettled(state = root().state)) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
                 }
-            }, e -> promise._reject(e));
-        });
 
-        return promise;
+                if (timed && (waiter.nanos = deadline - System.nanoTime()) <= 0L) {
+                    throw new TimeoutException();
+                }
+
+                if (managed) {
+                    ForkJoinPool.managedBlock(waiter);
+                } else {
+                    waiter.block();
+                }
+            }
+        } finally {
+            // a waiter which gave up doesn't hold the interest of the thread
+            waiter.thread = null;
+            unsubscribe(waiter);
+        }
+
+        return state;
     }
 
     /**
-     * Returns a {@link Promise} object that is resolved with {@code null} value
-     * 
-     * @return a {@link Promise} that is resolved with {@code null} value
+     * Pops the specified subscriber if it's still on the top of the stack of
+     * the root, e.g. a waiter which gave up, so that repeated waits don't
+     * pile up
      */
-    public static <T> Promise<T> resolve() {
-        return new Promise<T>((resolve, reject) -> resolve.accept((T) null));
+    private void unsubscribe(final Subscriber<?, ?> subscriber) {
+        final Promise<V> root = root();
+
+        if (subscriber == root.state) {
+            STATE.compareAndSet(root, subscriber, subscriber.link);
+        }
+    }
+
+    private V report(final Object state) throws ExecutionException {
+        if (isCancellation(state)) {
+            throw (CancellationException) CANCELLED.reason;
+        }
+
+        if (state instanceof Failure) {
+            ((Failure) state).handled = true;
+            throw new ExecutionException(((Failure) state).reason);
+        }
+
+        return root().valueOf(state);
     }
 
     /**
-     * Returns a {@link Promise} object that is resolved with the specific value
-     * 
-     * @param value
-     *            The to be resolved
-     * @return a {@link Promise} that is resolved with the specific value
+     * Returns the value of the specified fulfilled state of this root
      */
-    public static <T> Promise<T> resolve(final T value) {
-        return new Promise<T>((resolve, reject) -> resolve.accept(value));
+    @SuppressWarnings("unchecked")
+    private V valueOf(final Object state) {
+        return NIL == state ? null : (V) (UNBOXED == state ? box() : state);
     }
 
     /**
-     * Returns a {@link Promise} instance with the specified thenable
-     * 
-     * @param thenable
-     *            The thenable to resolve
-     * @return a {@link Promise} will "follow" the thenable, adopting its eventual state.
+     * Returns the specified settled state of this root in the form which can
+     * be shared with other promises, a rejection is handed over to the other
+     * promise, which becomes responsible for handling it
      */
-    public static <T> Promise<T> resolve(final Thenable<T> thenable) {
-        if (thenable instanceof Promise) {
-            return (Promise<T>) thenable;
+    private Object export(final Object state) {
+        if (UNBOXED == state) {
+            return box();
         }
 
-        final Promise<T> p = new Promise<T>();
-        p._resolve(thenable);
-        return p;
+        if (isCancellation(state)) {
+            return CANCELLED;
+        }
+
+        if (state instanceof Failure && CANCELLED != state) {
+            ((Failure) state).handled = true;
+            return new Failure(((Failure) state).reason);
+        }
+
+        return state;
     }
 
     /**
-     * Returns a Promise object that is rejected with the given reason.
-     * 
-     * @param reason
-     *            The reason why this Promise rejected.
-     * @return a {@link Promise} that is rejected with the given reason.
+     * Returns the boxed value of this primitive promise fulfilled with
+     * {@link #UNBOXED}, it's only boxed when a generic subscriber or caller
+     * asks for the value
      */
-    public static <T> Promise<T> reject(final Throwable reason) {
-        return new Promise<T>((resolve, reject) -> reject.accept(reason));
+    Object box() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the promise at the end of the link chain, which holds the
+     * subscribers and the result on behalf of this promise
+     */
+    @SuppressWarnings("unchecked")
+    Promise<V> root() {
+        Object state = this.state;
+
+        if (!(state instanceof Promise)) {
+            return this;
+        }
+
+        Promise<V> root = (Promise<V>) state;
+        for (;;) {
+            state = root.state;
+
+            if (state instanceof Promise) {
+                root = (Promise<V>) state;
+            } else if (state instanceof Detached) {
+                // the linked promises follow the root which took over the stack
+                root = (Promise<V>) ((Detached) state).root;
+            } else {
+                break;
+            }
+        }
+
+        // path compression
+        for (Promise<V> p = this; p != root && (state = p.state) instanceof Promise && state != root; p = (Promise<V>) state) {
+            STATE.compareAndSet(p, state, root);
+        }
+
+        return root;
+    }
+
+    void subscribe(final Subscriber<V, ?> subscriber) {
+        for (;;) {
+            final Object state = this.state;
+
+            if (state instanceof Promise) {
+                // subscribed through a linked promise, the root can tell it
+                // from its own subscribers if it's cancelled on its own
+                root().subscribe(subscriber instanceof Relay ? subscriber : new Relay<V>(subscriber));
+                return;
+            }
+
+            if (isSettled(state)) {
+                notify(subscriber, state);
+                return;
+            }
+
+            subscriber.link = (Subscriber<?, ?>) state;
+
+            if (STATE.compareAndSet(this, state, subscriber)) {
+                return;
+            }
+        }
     }
 
-    private final Queue<Subscriber<V, ?>> subscribers = new ConcurrentLinkedQueue<Subscriber<V, ?>>();
+    private boolean settle(final Object result) {
+        for (;;) {
+            final Object state = this.state;
+
+            if (state instanceof Promise) {
+                return root().settle(result);
+            }
+
+            if (isSettled(state)) {
+                return false;
+            }
 
-    private volatile V value;
-    private volatile Throwable reason;
-    private volatile AtomicReference<State> state = new AtomicReference<State>(State.PENDING);
+            if (complete(state, result)) {
+                return true;
+            }
+        }
+    }
 
     /**
-     * Default constructor
+     * Subscribes the specified subscriber on behalf of the next promise, which
+     * becomes a downstream of this promise for cancellation
      */
-    public Promise() {
+    void subscribe(final Subscriber<V, ?> subscriber, final Promise<?> next) {
+        next.upstream = this;
+        subscribe(subscriber);
     }
 
     /**
-     * Create an instance with an executor function
+     * Returns the scheduler inherited by the promises derived from this one
+     */
+    Scheduler scheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Returns whether this root is fulfilled with {@link #UNBOXED}
+     */
+    boolean isUnboxed() {
+        return UNBOXED == this.state;
+    }
+
+    /**
+     * Fulfills this promise with {@link #UNBOXED}, the primitive value must
+     * have been stored by the subclass
      * 
-     * @param executor
-     *            The executor function
+     * @return true if this promise was pending and not linked to another one
      */
-    public Promise(final Executor<Consumer<V>, Consumer<Throwable>> executor) {
-        try {
-            executor.accept(v -> setTimeout(() -> _resolve(v)), e -> setTimeout(() -> _reject(e)));
-        } catch (final Throwable e) {
-            _reject(e);
+    boolean fulfillUnboxed() {
+        for (;;) {
+            final Object state = this.state;
+
+            if (state instanceof Promise || isSettled(state)) {
+                return false;
+            }
+
+            if (complete(state, UNBOXED)) {
+                return true;
+            }
         }
     }
 
-    @Override
-    public synchronized Promise<V> then(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected) {
-        final Promise<V> next = new Promise<V>();
+    /**
+     * Replaces the expected pending state with the result, and notifies the
+     * subscribers of the expected state
+     */
+    private boolean complete(final Object expected, final Object result) {
+        if (!STATE.compareAndSet(this, expected, result)) {
+            return false;
+        }
 
-        switch (this.state.get()) {
-        case FULFILLED:
-            setTimeout(() -> _resolve(next, onFulfilled, this.value));
-            break;
-        case REJECTED:
-            setTimeout(() -> _reject(next, onRejected, this.reason));
-            break;
-        default:
-            this.subscribers.offer(new ConsumerSubscriber<>(onFulfilled, onRejected, next));
-            break;
+        this.upstream = null;
+
+        for (Subscriber<?, ?> head = reverse((Subscriber<?, ?>) expected); null != head;) {
+            final Subscriber<?, ?> subscriber = head;
+            head = subscriber.link;
+            subscriber.link = null;
+            notify(subscriber, result);
         }
 
-        return next;
+        if (result instanceof Failure && CANCELLED != result && !((Failure) result).handled) {
+            track((Failure) result);
+        }
+
+        return true;
     }
 
-    @Override
-    public synchronized <R> Promise<R> then(final Function<V, R> onFulfilled, final Function<Throwable, R> onRejected) {
-        final Promise<R> next = new Promise<R>();
+    /**
+     * Reports the specified rejection of this promise to the
+     * {@link UnhandledRejectionHandler} if no handler observes it until the
+     * next tick of the timer, a cancellation passed down to the derived
+     * promises is not an error to report
+     */
+    private void track(final Failure failure) {
+        if (failure.reason instanceof CancellationException) {
+            return;
+        }
+
+        UNHANDLED.offer(new Unhandled(this, failure));
 
-        switch (this.state.get()) {
-        case FULFILLED:
-            setTimeout(() -> _resolve(next, onFulfilled, this.value));
-            break;
-        case REJECTED:
-            setTimeout(() -> _reject(next, onRejected, this.reason));
-            break;
-        default:
-            this.subscribers.offer(new FunctionSubscriber<V, R>(onFulfilled, onRejected, next));
-            break;
+        if (!UNHANDLED_ARMED.get() && UNHANDLED_ARMED.compareAndSet(false, true)) {
+            Internal.setTimeout(Promise::reportUnhandled, 0L);
         }
+    }
 
-        return next;
+    /**
+     * Reports the tracked rejections which are still unhandled, the ones
+     * tracked after the timeout is disarmed arm the next one
+     */
+    private static void reportUnhandled() {
+        UNHANDLED_ARMED.set(false);
+
+        for (Unhandled unhandled; null != (unhandled = UNHANDLED.poll());) {
+            final Failure failure = unhandled.failure;
+
+            if (!failure.handled) {
+                failure.handled = true;
+
+                try {
+                    Internal.getUnhandledRejectionHandler().onUnhandledRejection(unhandled.promise, failure.reason);
+                } catch (final Throwable t) {
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            }
+        }
     }
 
-    private void _reject(final Throwable e) {
-        if (this.state.compareAndSet(State.PENDING, State.REJECTED)) {
-            this.reason = e;
+    /**
+     * Links the root of the specified pending promise to the root of this
+     * promise, so that a chain of adopted promises shares a single root
+     * instead of subscribing to each other. A promise observed by other
+     * consumers, or linked already, is subscribed to instead, as cancelling
+     * this promise would settle it for the others.
+     */
+    @SuppressWarnings("unchecked")
+    private void link(final Promise<V> promise) {
+        final Promise<V> target = root();
+
+        for (;;) {
+            final Promise<V> source = promise.root();
+
+            if (source == target) {
+                target._reject(new TypeException("Self resolution"));
+                return;
+            }
+
+            final Object state = source.state;
+
+            if (state instanceof Promise) {
+                continue;
+            }
+
+            if (isSettled(state)) {
+                target.settle(source.export(state));
+                return;
+            }
+
+            if (source != promise || isObserved((Subscriber<?, ?>) state, false)) {
+                target.upstream = promise;
+                promise.subscribe(new Adoption<V>(target));
+                return;
+            }
 
-            while (!this.subscribers.isEmpty()) {
-                final Subscriber<V, ?> subscriber = this.subscribers.poll();
+            if (STATE.compareAndSet(source, state, target)) {
+                // the upstream of the target has settled already, cancellation
+                // of the target goes to the upstream of the source instead
+                if (null != source.upstream) {
+                    target.upstream = source.upstream;
+                    source.upstream = null;
+                }
 
-                if (subscriber instanceof ConsumerSubscriber) {
-                    final ConsumerSubscriber<V> consumer = (ConsumerSubscriber<V>) subscriber;
-                    _reject(consumer.next, consumer.onRejected, this.reason);
-                } else if (subscriber instanceof Function) {
-                    final FunctionSubscriber<V, ?> function = (FunctionSubscriber<V, ?>) subscriber;
-                    _reject(function.next, function.onRejected, this.reason);
+                for (Subscriber<?, ?> head = reverse((Subscriber<?, ?>) state); null != head;) {
+                    final Subscriber<V, ?> subscriber = (Subscriber<V, ?>) head;
+                    head = subscriber.link;
+                    target.subscribe(subscriber instanceof Relay ? subscriber : new Relay<V>(subscriber));
                 }
+                return;
             }
         }
     }
 
-    private void _resolve(final V value) {
-        if (value == this) {
-            _reject(new TypeException("Self resolution"));
-            return;
+    /**
+     * Reverses the subscriber stack to restore the order of registration
+     */
+    private static Subscriber<?, ?> reverse(Subscriber<?, ?> subscriber) {
+        Subscriber<?, ?> head = null;
+
+        for (Subscriber<?, ?> link; null != subscriber; subscriber = link) {
+            link = subscriber.link;
+            subscriber.link = head;
+            head = subscriber;
         }
 
-        if (this.state.compareAndSet(State.PENDING, State.FULFILLED)) {
-            this.value = value;
+        return head;
+    }
+
+    private static boolean isSettled(final Object state) {
+        return null != state && !(state instanceof Subscriber) && !(state instanceof Promise);
+    }
+
+    private static boolean isCancellation(final Object state) {
+        return CANCELLED == state || state instanceof Detached;
+    }
 
-            while (!this.subscribers.isEmpty()) {
-                final Subscriber<V, ?> subscriber = this.subscribers.poll();
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void notify(final Subscriber subscriber, final Object result) {
+        final Promise<?> next = subscriber.next();
 
-                if (subscriber instanceof ConsumerSubscriber) {
-                    final ConsumerSubscriber<V> consumer = (ConsumerSubscriber<V>) subscriber;
-                    _resolve(consumer.next, consumer.onFulfilled, this.value);
-                } else if (subscriber instanceof Function) {
-                    final FunctionSubscriber<V, ?> function = (FunctionSubscriber<V, ?>) subscriber;
-                    _resolve(function.next, function.onFulfilled, this.value);
-                }
+        if (result instanceof Failure && subscriber.handlesRejection()) {
+            ((Failure) result).handled = true;
+        }
+
+        if (null == next) {
+            // notified on the settling thread
+            if (isCancellation(result)) {
+                subscriber.cancel(CANCELLED.reason);
+            } else if (result instanceof Failure) {
+                subscriber.reject(((Failure) result).reason);
+            } else {
+                fulfill(subscriber, result);
             }
+        } else if (result instanceof Failure) {
+            setTimeout(next.scheduler, () -> subscriber.reject(((Failure) result).reason));
+        } else {
+            setTimeout(next.scheduler, () -> fulfill(subscriber, result));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void fulfill(final Subscriber subscriber, final Object result) {
+        if (UNBOXED == result) {
+            subscriber.resolveUnboxed(this);
+        } else {
+            subscriber.resolve(NIL == result ? null : result);
+        }
+    }
+
+    void _reject(final Throwable e) {
+        settle(new Failure(e));
+    }
+
+    @SuppressWarnings("unchecked")
+    void _resolve(final V value) {
+        if (value instanceof Thenable) {
+            _resolve((Thenable<V>) value);
+            return;
         }
+
+        settle(null == value ? NIL : value);
     }
 
     private void _resolve(final Thenable<V> thenable) {
@@ -315,7 +1656,12 @@ public class Promise<V> implements Thenable<V> {
         }
 
         if (null == thenable) {
-            _resolve((V) null);
+            settle(NIL);
+            return;
+        }
+
+        if (thenable instanceof Promise) {
+            link((Promise<V>) thenable);
             return;
         }
 
@@ -338,7 +1684,11 @@ public class Promise<V> implements Thenable<V> {
         }
     }
 
-    private static <V> void _reject(final Promise next, final Consumer<Throwable> onRejected, final Throwable reason) {
+    static <V> void _reject(final Promise next, final Consumer<Throwable> onRejected, final Throwable reason) {
+        if (next.isCancelled()) {
+            return;
+        }
+
         try {
             if (null != onRejected) {
                 onRejected.accept(reason);
@@ -351,7 +1701,11 @@ public class Promise<V> implements Thenable<V> {
         }
     }
 
-    private static <V> void _resolve(final Promise next, final Consumer<V> onFulfilled, final V value) {
+    static <V> void _resolve(final Promise next, final Consumer<V> onFulfilled, final V value) {
+        if (next.isCancelled()) {
+            return;
+        }
+
         try {
             if (null != onFulfilled) {
                 onFulfilled.accept(value);
@@ -364,7 +1718,11 @@ public class Promise<V> implements Thenable<V> {
         }
     }
 
-    private static <R> void _reject(final Promise next, final Function<Throwable, R> onRejected, final Throwable reason) {
+    static <R> void _reject(final Promise next, final Function<Throwable, R> onRejected, final Throwable reason) {
+        if (next.isCancelled()) {
+            return;
+        }
+
         try {
             if (null != onRejected) {
                 next._resolve(onRejected.apply(reason));
@@ -376,7 +1734,11 @@ public class Promise<V> implements Thenable<V> {
         }
     }
 
-    private static <V, R> void _resolve(final Promise next, final Function<V, R> onFulfilled, final V value) {
+    static <V, R> void _resolve(final Promise next, final Function<V, R> onFulfilled, final V value) {
+        if (next.isCancelled()) {
+            return;
+        }
+
         try {
             if (null != onFulfilled) {
                 next._resolve(onFulfilled.apply(value));
@@ -388,8 +1750,104 @@ public class Promise<V> implements Thenable<V> {
         }
     }
 
-    private static <T> Promise<T> cast(final Object value) {
-        return (Promise<T>) (value instanceof Promise ? value : resolve(value));
+    /**
+     * The resolving functions passed to the executor, only the first call
+     * takes effect
+     */
+    @SuppressWarnings("rawtypes")
+    private static final class Resolver<V> implements Consumer<V> {
+
+        static final AtomicIntegerFieldUpdater<Resolver> DONE = AtomicIntegerFieldUpdater.newUpdater(Resolver.class, "done");
+
+        final Promise<V> promise;
+
+        volatile int done;
+
+        Resolver(final Promise<V> promise) {
+            this.promise = promise;
+        }
+
+        boolean lock() {
+            return DONE.compareAndSet(this, 0, 1);
+        }
+
+        @Override
+        public void accept(final V value) {
+            if (lock()) {
+                setTimeout(this.promise.scheduler, () -> this.promise._resolve(value));
+            }
+        }
+
+        void reject(final Throwable reason) {
+            if (lock()) {
+                setTimeout(this.promise.scheduler, () -> this.promise._reject(reason));
+            }
+        }
+    }
+
+    /**
+     * The reason of cancelled promises, shared without stack trace
+     */
+    private static final class Cancellation extends CancellationException {
+
+        private static final long serialVersionUID = 1L;
+
+        Cancellation() {
+            super("Cancelled");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * The settled state of a rejected promise
+     */
+    /**
+     * A rejection waiting to be reported if it's still unhandled
+     */
+    private static final class Unhandled {
+
+        final Promise<?> promise;
+
+        final Failure failure;
+
+        Unhandled(final Promise<?> promise, final Failure failure) {
+            this.promise = promise;
+            this.failure = failure;
+        }
+    }
+
+    private static class Failure {
+
+        final Throwable reason;
+
+        /**
+         * Whether the rejection has been observed by a handler
+         */
+        volatile boolean handled;
+
+        Failure(final Throwable reason) {
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * The state of a root cancelled on its own while the promises linked to it
+     * are still observed, the root reads as cancelled, while the linked
+     * promises follow the new root holding the rest of the stack
+     */
+    private static final class Detached extends Failure {
+
+        final Promise<?> root;
+
+        Detached(final Promise<?> root) {
+            super(CANCELLED.reason);
+            this.root = root;
+            this.handled = true;
+        }
     }
 
 }
@@ -0,0 +1,612 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An asynchronous loading cache whose values are promises, concurrent lookups
+ * of a missing key share a single in-flight load, rejected or cancelled loads
+ * are removed as soon as they settle, so the next lookup loads again.
+ *
+ * <pre>
+ * final PromiseCache&lt;String, User&gt; users = PromiseCache.&lt;String, User&gt; builder()
+ *         .maximumSize(10000)
+ *         .expireAfterWrite(10, TimeUnit.MINUTES)
+ *         .refreshAfterWrite(1, TimeUnit.MINUTES)
+ *         .build(id -&gt; api.fetchUser(id));
+ *
+ * users.get("johnsonlee").then(user -&gt; ...);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ * @param <K>
+ *            The type of key
+ * @param <V>
+ *            The type of value
+ */
+public final class PromiseCache<K, V> {
+
+    /**
+     * The resolution of the access time, a hit within this duration since
+     * the last recorded access doesn't write it again, nor reorder the entry
+     */
+    private static final long ACCESS_RESOLUTION = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Returns a builder of {@link PromiseCache}
+     *
+     * @return a new builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<K, V>();
+    }
+
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<K, Entry<K, V>>();
+
+    private final Function<K, ? extends Thenable<V>> loader;
+
+    private final long maximumSize;
+
+    private final long expireAfterWrite;
+
+    private final long refreshAfterWrite;
+
+    /**
+     * The sentinel of the entries in access order, the least recently used
+     * one follows it, only linked while the size is bounded
+     */
+    private final Entry<K, V> order = new Entry<K, V>(null, null);
+
+    /**
+     * Guards the access order, the lookups skip reordering rather than
+     * waiting for it
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private PromiseCache(final Builder<K, V> builder, final Function<K, ? extends Thenable<V>> loader) {
+        this.loader = loader;
+        this.maximumSize = builder.maximumSize;
+        this.expireAfterWrite = builder.expireAfterWrite;
+        this.refreshAfterWrite = builder.refreshAfterWrite;
+        this.order.prev = this.order.next = this.order;
+    }
+
+    /**
+     * Returns the promise of the value associated with the specified key,
+     * loading it if it's absent, the concurrent lookups of the same key share
+     * a single load, which is cancelled once all of the returned promises are
+     * cancelled
+     *
+     * @param key
+     *            The key
+     * @return the promise of the value, rejected if the load fails
+     */
+    public Promise<V> get(final K key) {
+        return get(key, this.loader);
+    }
+
+    /**
+     * Returns the promise of the value associated with the specified key,
+     * loading it with the specified loader if it's absent
+     *
+     * @param key
+     *            The key
+     * @param loader
+     *            The function to load the value
+     * @return the promise of the value, rejected if the load fails
+     */
+    public Promise<V> get(final K key, final Function<K, ? extends Thenable<V>> loader) {
+        final Entry<K, V> entry = this.map.get(key);
+
+        if (null != entry) {
+            final long now = System.nanoTime();
+
+            if (!isExpired(entry, now) && !entry.promise.isCancelled()) {
+                access(entry, now);
+                refreshIfNeeded(key, entry, now, loader);
+                return entry.share();
+            }
+
+            remove(key, entry);
+        }
+
+        final Entry<K, V> created = new Entry<K, V>(key, new Promise<V>());
+        final Entry<K, V> existing = this.map.putIfAbsent(key, created);
+        if (null != existing) {
+            return existing.share();
+        }
+
+        link(created);
+        load(key, created, loader);
+        evictIfNeeded();
+        return created.share();
+    }
+
+    /**
+     * Returns the promise of the value associated with the specified key
+     * without loading it
+     *
+     * @param key
+     *            The key
+     * @return the promise of the value, or {@code null} if it's absent
+     */
+    public Promise<V> getIfPresent(final K key) {
+        final Entry<K, V> entry = this.map.get(key);
+        final long now = System.nanoTime();
+
+        if (null == entry || isExpired(entry, now) || entry.promise.isCancelled()) {
+            return null;
+        }
+
+        access(entry, now);
+        return entry.share();
+    }
+
+    /**
+     * Associates the specified value with the specified key
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value
+     */
+    public void put(final K key, final V value) {
+        final Entry<K, V> entry = new Entry<K, V>(key, new Promise<V>());
+        final Entry<K, V> replaced = this.map.put(key, entry);
+
+        if (null != replaced) {
+            unlink(replaced);
+        }
+
+        link(entry);
+        onLoaded(key, entry);
+        entry.promise._resolve(value);
+        evictIfNeeded();
+    }
+
+    /**
+     * Discards the entry of the specified key, the in-flight load is not
+     * cancelled
+     *
+     * @param key
+     *            The key
+     */
+    public void invalidate(final K key) {
+        final Entry<K, V> entry = this.map.remove(key);
+
+        if (null != entry) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Discards all entries
+     */
+    public void invalidateAll() {
+        for (final K key : this.map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Returns the number of entries, including the in-flight loads
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return this.map.mappingCount();
+    }
+
+    private boolean isExpired(final Entry<K, V> entry, final long now) {
+        return this.expireAfterWrite > 0 && entry.loadedAt != 0 && now - entry.loadedAt >= this.expireAfterWrite;
+    }
+
+    private void load(final K key, final Entry<K, V> entry, final Function<K, ? extends Thenable<V>> loader) {
+        onLoaded(key, entry);
+        load(key, entry.promise, loader);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <K, V> void load(final K key, final Promise<V> promise, final Function<K, ? extends Thenable<V>> loader) {
+        try {
+            ((Promise) promise)._resolve(loader.apply(key));
+        } catch (final Throwable e) {
+            promise._reject(e);
+        }
+    }
+
+    private void onLoaded(final K key, final Entry<K, V> entry) {
+        entry.promise.subscribe(new Settlement<K, V>(this, key, entry));
+    }
+
+    /**
+     * Reloads the value in the background if it's older than the refresh
+     * interval, the current value is served until the new one is loaded
+     */
+    private void refreshIfNeeded(final K key, final Entry<K, V> entry, final long now, final Function<K, ? extends Thenable<V>> loader) {
+        if (this.refreshAfterWrite <= 0 || 0 == entry.loadedAt || now - entry.loadedAt < this.refreshAfterWrite || !entry.startRefresh()) {
+            return;
+        }
+
+        final Entry<K, V> next = new Entry<K, V>(key, new Promise<V>());
+        next.accessedAt = now;
+        next.promise.subscribe(new Refresh<K, V>(this, key, entry, next));
+        load(key, next.promise, loader);
+    }
+
+    /**
+     * Records the access of the entry, and moves it to the most recently used
+     * end unless another thread is reordering, the next access catches up
+     */
+    private void access(final Entry<K, V> entry, final long now) {
+        if (!entry.access(now) || this.maximumSize <= 0 || !this.lock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (null != entry.next) {
+                entry.detach();
+                entry.append(this.order);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the entry as the most recently used one, unless it has been
+     * removed already
+     */
+    private void link(final Entry<K, V> entry) {
+        if (this.maximumSize <= 0) {
+            return;
+        }
+
+        this.lock.lock();
+
+        try {
+            if (!entry.removed && null == entry.next) {
+                entry.append(this.order);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the entry removed from the map from the access order
+     */
+    private void unlink(final Entry<K, V> entry) {
+        if (this.maximumSize <= 0) {
+            return;
+        }
+
+        this.lock.lock();
+
+        try {
+            entry.removed = true;
+
+            if (null != entry.next) {
+                entry.detach();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries while the size exceeds the
+     * maximum
+     */
+    private void evictIfNeeded() {
+        if (this.maximumSize <= 0) {
+            return;
+        }
+
+        while (this.map.mappingCount() > this.maximumSize) {
+            final Entry<K, V> victim;
+
+            this.lock.lock();
+
+            try {
+                // the entries being added are evicted by their own callers
+                if (this.order == (victim = this.order.next)) {
+                    return;
+                }
+
+                victim.removed = true;
+                victim.detach();
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.map.remove(victim.key, victim);
+        }
+    }
+
+    /**
+     * Removes the entry once it's expired or its load is rejected
+     */
+    void remove(final K key, final Entry<K, V> entry) {
+        this.map.remove(key, entry);
+        unlink(entry);
+    }
+
+    static final class Entry<K, V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Entry> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "refreshing");
+
+        final K key;
+
+        final Promise<V> promise;
+
+        /**
+         * The neighbours in the access order, guarded by the lock of the
+         * cache, {@code null} while not linked
+         */
+        Entry<K, V> prev;
+        Entry<K, V> next;
+
+        /**
+         * Whether the entry has been removed from the cache, guarded by the
+         * lock of the cache
+         */
+        boolean removed;
+
+        /**
+         * The time the value is loaded, 0 while loading
+         */
+        volatile long loadedAt;
+
+        volatile long accessedAt = System.nanoTime();
+
+        volatile int refreshing;
+
+        Entry(final K key, final Promise<V> promise) {
+            this.key = key;
+            this.promise = promise;
+        }
+
+        /**
+         * Records the access at the specified time, unless the recorded one
+         * is within the resolution, so the hits of a hot key don't write it
+         * each time
+         *
+         * @return true if the access is recorded
+         */
+        boolean access(final long now) {
+            if (now - this.accessedAt >= ACCESS_RESOLUTION) {
+                this.accessedAt = now;
+                return true;
+            }
+
+            return false;
+        }
+
+        void append(final Entry<K, V> sentinel) {
+            this.prev = sentinel.prev;
+            this.next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        void detach() {
+            this.prev.next = this.next;
+            this.next.prev = this.prev;
+            this.prev = this.next = null;
+        }
+
+        /**
+         * Returns a promise following the load on behalf of a single caller,
+         * cancelling it only drops the interest of the caller
+         */
+        Promise<V> share() {
+            return this.promise.then((Consumer<V>) null, (Consumer<Throwable>) null);
+        }
+
+        boolean startRefresh() {
+            return REFRESHING.compareAndSet(this, 0, 1);
+        }
+
+        void endRefresh() {
+            this.refreshing = 0;
+        }
+    }
+
+    /**
+     * Schedules the expiration of the entry once it's loaded, or removes it
+     * once it's rejected
+     */
+    private static final class Settlement<K, V> extends Subscriber<V, Void> {
+
+        final PromiseCache<K, V> cache;
+
+        final K key;
+
+        final Entry<K, V> entry;
+
+        Settlement(final PromiseCache<K, V> cache, final K key, final Entry<K, V> entry) {
+            this.cache = cache;
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final V value) {
+            loaded();
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            loaded();
+        }
+
+        private void loaded() {
+            this.entry.loadedAt = Math.max(1L, System.nanoTime());
+
+            if (this.cache.expireAfterWrite > 0) {
+                Internal.setTimeout(() -> this.cache.remove(this.key, this.entry), TimeUnit.NANOSECONDS.toMillis(this.cache.expireAfterWrite));
+            }
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.cache.remove(this.key, this.entry);
+        }
+
+        @Override
+        boolean isCancelled() {
+            // not an interest in the result, the load is cancelled once all
+            // of the callers have cancelled
+            return true;
+        }
+
+        @Override
+        boolean handlesRejection() {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the stale entry once the refreshed value is loaded, or keeps
+     * serving the stale one if the refresh fails
+     */
+    private static final class Refresh<K, V> extends Subscriber<V, Void> {
+
+        final PromiseCache<K, V> cache;
+
+        final K key;
+
+        final Entry<K, V> stale;
+
+        final Entry<K, V> fresh;
+
+        Refresh(final PromiseCache<K, V> cache, final K key, final Entry<K, V> stale, final Entry<K, V> fresh) {
+            this.cache = cache;
+            this.key = key;
+            this.stale = stale;
+            this.fresh = fresh;
+        }
+
+        @Override
+        Promise<?> next() {
+            return null;
+        }
+
+        @Override
+        void resolve(final V value) {
+            refreshed();
+        }
+
+        @Override
+        void resolveUnboxed(final Promise<?> root) {
+            refreshed();
+        }
+
+        private void refreshed() {
+            if (this.cache.map.replace(this.key, this.stale, this.fresh)) {
+                this.cache.unlink(this.stale);
+                this.cache.link(this.fresh);
+                this.cache.onLoaded(this.key, this.fresh);
+            }
+        }
+
+        @Override
+        void reject(final Throwable reason) {
+            this.stale.endRefresh();
+        }
+    }
+
+    /**
+     * The builder of {@link PromiseCache}
+     *
+     * @param <K>
+     *            The type of key
+     * @param <V>
+     *            The type of value
+     */
+    public static final class Builder<K, V> {
+
+        private long maximumSize;
+
+        private long expireAfterWrite;
+
+        private long refreshAfterWrite;
+
+        private Builder() {
+        }
+
+        /**
+         * Bounds the number of entries, the least recently used entries are
+         * evicted, the accesses of an entry within a millisecond, or racing
+         * with another access, are counted as one
+         *
+         * @param maximumSize
+         *            The maximum number of entries, 0 means unbounded
+         * @return this builder
+         */
+        public Builder<K, V> maximumSize(final long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize < 0");
+            }
+
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Expires the entries after the specified duration since the value
+         * is loaded
+         *
+         * @param duration
+         *            The duration, 0 means never
+         * @param unit
+         *            The time unit of the duration
+         * @return this builder
+         */
+        public Builder<K, V> expireAfterWrite(final long duration, final TimeUnit unit) {
+            this.expireAfterWrite = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Reloads the entries in the background on the first lookup after the
+         * specified duration since the value is loaded
+         *
+         * @param duration
+         *            The duration, 0 means never
+         * @param unit
+         *            The time unit of the duration
+         * @return this builder
+         */
+        public Builder<K, V> refreshAfterWrite(final long duration, final TimeUnit unit) {
+            this.refreshAfterWrite = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Builds the cache with the specified loader
+         *
+         * @param loader
+         *            The function to load the value of a key
+         * @return a new cache
+         */
+        public PromiseCache<K, V> build(final Function<K, ? extends Thenable<V>> loader) {
+            if (null == loader) {
+                throw new NullPointerException("loader");
+            }
+
+            return new PromiseCache<K, V>(this, loader);
+        }
+    }
+
+}
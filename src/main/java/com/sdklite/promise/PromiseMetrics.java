@@ -0,0 +1,145 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link Instrumentation} which aggregates the lifecycle of promises and
+ * the execution of callbacks into counters.
+ *
+ * <pre>
+ * final PromiseMetrics metrics = new PromiseMetrics();
+ * Instrumentation.install(metrics);
+ * ...
+ * gauge("promise.pending", metrics::getPending);
+ * </pre>
+ *
+ * @author johnsonlee
+ *
+ */
+public final class PromiseMetrics implements Instrumentation {
+
+    private final LongAdder created = new LongAdder();
+
+    private final LongAdder fulfilled = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder cancelled = new LongAdder();
+
+    private final LongAdder settleNanos = new LongAdder();
+
+    private final LongAdder callbacks = new LongAdder();
+
+    private final LongAdder callbackNanos = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    @Override
+    public void onCreated() {
+        this.created.increment();
+    }
+
+    @Override
+    public void onSettled(final State state, final long nanos) {
+        switch (state) {
+        case FULFILLED:
+            this.fulfilled.increment();
+            break;
+        case REJECTED:
+            this.rejected.increment();
+            break;
+        default:
+            this.cancelled.increment();
+            break;
+        }
+
+        this.settleNanos.add(nanos);
+    }
+
+    @Override
+    public void onCallback(final long waitNanos, final long runNanos) {
+        this.callbacks.increment();
+        this.callbackNanos.add(runNanos);
+        this.waitNanos.add(waitNanos);
+    }
+
+    /**
+     * Returns the number of promises created
+     */
+    public long getCreated() {
+        return this.created.sum();
+    }
+
+    /**
+     * Returns the number of promises fulfilled
+     */
+    public long getFulfilled() {
+        return this.fulfilled.sum();
+    }
+
+    /**
+     * Returns the number of promises rejected, excluding the cancelled ones
+     */
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Returns the number of promises cancelled
+     */
+    public long getCancelled() {
+        return this.cancelled.sum();
+    }
+
+    /**
+     * Returns the number of promises created but not settled yet
+     */
+    public long getPending() {
+        return Math.max(0L, getCreated() - getFulfilled() - getRejected() - getCancelled());
+    }
+
+    /**
+     * Returns the total time from creation to settlement of the settled
+     * promises in nanoseconds
+     */
+    public long getSettleTimeNanos() {
+        return this.settleNanos.sum();
+    }
+
+    /**
+     * Returns the number of callbacks executed
+     */
+    public long getCallbacks() {
+        return this.callbacks.sum();
+    }
+
+    /**
+     * Returns the total execution time of callbacks in nanoseconds
+     */
+    public long getCallbackTimeNanos() {
+        return this.callbackNanos.sum();
+    }
+
+    /**
+     * Returns the total time callbacks waited in the queue in nanoseconds
+     */
+    public long getWaitTimeNanos() {
+        return this.waitNanos.sum();
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of the built-in
+     * executor
+     */
+    public int getQueueDepth() {
+        return Internal.getQueueDepth();
+    }
+
+    @Override
+    public String toString() {
+        return "PromiseMetrics[created=" + getCreated() + ", pending=" + getPending() + ", fulfilled=" + getFulfilled()
+                + ", rejected=" + getRejected() + ", cancelled=" + getCancelled() + ", callbacks=" + getCallbacks()
+                + ", queue=" + getQueueDepth() + "]";
+    }
+
+}
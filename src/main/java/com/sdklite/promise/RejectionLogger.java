@@ -0,0 +1,90 @@
+package com.sdklite.promise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The default {@link UnhandledRejectionHandler}, it aggregates the rejections
+ * by exception type, logs the first one of each type, and the counts of the
+ * others periodically
+ *
+ * @author johnsonlee
+ *
+ */
+final class RejectionLogger implements UnhandledRejectionHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(Promise.class.getName());
+
+    /**
+     * The maximum number of exception types tracked, the others are counted
+     * as {@code "other"}
+     */
+    private static final int MAX_TYPES = 256;
+
+    private final long interval;
+
+    private final boolean stackTraces;
+
+    /**
+     * The exception types ever logged
+     */
+    private final Map<String, Boolean> seen = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * The exception types and their counts since the last summary
+     */
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<String, LongAdder>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    RejectionLogger(final long interval, final boolean stackTraces) {
+        this.interval = Math.max(1L, interval);
+        this.stackTraces = stackTraces;
+    }
+
+    @Override
+    public void onUnhandledRejection(final Promise<?> promise, final Throwable reason) {
+        final String type = null == reason ? "null" : reason.getClass().getName();
+
+        if (this.seen.size() < MAX_TYPES && null == this.seen.putIfAbsent(type, Boolean.TRUE)) {
+            if (this.stackTraces) {
+                LOGGER.log(Level.WARNING, "Unhandled promise rejection", reason);
+            } else {
+                LOGGER.log(Level.WARNING, "Unhandled promise rejection: {0}", String.valueOf(reason));
+            }
+            return;
+        }
+
+        final String key = this.seen.containsKey(type) ? type : "other";
+        this.counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+
+        if (this.scheduled.compareAndSet(false, true)) {
+            Internal.setTimeout(this::flush, this.interval);
+        }
+    }
+
+    private void flush() {
+        this.scheduled.set(false);
+
+        final StringBuilder summary = new StringBuilder();
+        long total = 0;
+
+        for (final Map.Entry<String, LongAdder> entry : this.counts.entrySet()) {
+            final long count = entry.getValue().sumThenReset();
+
+            if (count > 0) {
+                total += count;
+                summary.append(summary.length() > 0 ? ", " : "").append(entry.getKey()).append('=').append(count);
+            }
+        }
+
+        if (total > 0) {
+            LOGGER.log(Level.WARNING, "{0} more unhandled promise rejections in the last {1} ms: {2}", new Object[] { total, this.interval, summary });
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber registered on a root through a promise linked to it, the
+ * root hands it over to the linked promises if it's cancelled on its own
+ */
+final class Relay<V> extends Subscriber<V, Object> {
+
+    final Subscriber<V, ?> subscriber;
+
+    public Relay(final Subscriber<V, ?> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return this.subscriber.next();
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.subscriber.resolve(value);
+    }
+
+    @Override
+    void resolveUnboxed(final Promise<?> root) {
+        this.subscriber.resolveUnboxed(root);
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.subscriber.reject(reason);
+    }
+
+    @Override
+    void cancel(final Throwable reason) {
+        this.subscriber.cancel(reason);
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.subscriber.isCancelled();
+    }
+
+    @Override
+    boolean handlesRejection() {
+        return this.subscriber.handlesRejection();
+    }
+
+    @Override
+    void dispose() {
+        this.subscriber.dispose();
+    }
+
+}
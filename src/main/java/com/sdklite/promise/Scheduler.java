@@ -0,0 +1,104 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Represents the place where the callbacks of a {@link Promise} are executed.
+ *
+ * @author johnsonlee
+ *
+ */
+@FunctionalInterface
+public interface Scheduler {
+
+    /**
+     * Returns the global default scheduler
+     *
+     * @return the scheduler which is used by promises that are not bound to a
+     *         specific scheduler
+     */
+    static Scheduler getDefault() {
+        return Internal.getScheduler();
+    }
+
+    /**
+     * Replaces the global default scheduler
+     *
+     * @param scheduler
+     *            The new default scheduler, or {@code null} to restore the
+     *            built-in one
+     */
+    static void setDefault(final Scheduler scheduler) {
+        Internal.setScheduler(scheduler);
+    }
+
+    /**
+     * Returns a scheduler that runs tasks on the calling thread, e.g. the
+     * thread that settles the promise
+     *
+     * @return the direct scheduler
+     */
+    static Scheduler direct() {
+        return Schedulers.DIRECT;
+    }
+
+    /**
+     * Returns a scheduler backed by {@link ForkJoinPool#commonPool()}
+     *
+     * @return the common pool scheduler
+     */
+    static Scheduler forkJoin() {
+        return forkJoin(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a scheduler backed by the specified {@link ForkJoinPool}, tasks
+     * scheduled from a worker of the pool are forked into its local queue
+     *
+     * @param pool
+     *            The fork join pool
+     * @return a scheduler backed by the pool
+     */
+    static Scheduler forkJoin(final ForkJoinPool pool) {
+        return new Schedulers.ForkJoinScheduler(pool);
+    }
+
+    /**
+     * Returns a scheduler that starts a new virtual thread for each task
+     *
+     * @return the virtual thread scheduler
+     * @throws UnsupportedOperationException
+     *             if the running JVM does not support virtual threads
+     */
+    static Scheduler virtual() {
+        return Schedulers.virtual();
+    }
+
+    /**
+     * Returns a scheduler backed by the specified executor
+     *
+     * @param executor
+     *            The executor to run tasks
+     * @return a scheduler backed by the executor
+     */
+    static Scheduler from(final java.util.concurrent.Executor executor) {
+        if (null == executor) {
+            throw new NullPointerException("executor");
+        }
+
+        if (executor instanceof ForkJoinPool) {
+            return forkJoin((ForkJoinPool) executor);
+        }
+
+        return executor::execute;
+    }
+
+    /**
+     * Executes the specified task
+     *
+     * @param task
+     *            The task to execute
+     */
+    void execute(final Runnable task);
+
+}
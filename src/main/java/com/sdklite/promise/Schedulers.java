@@ -0,0 +1,85 @@
+package com.sdklite.promise;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+final class Schedulers {
+
+    static final Scheduler DIRECT = new Scheduler() {
+        @Override
+        public void execute(final Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return "DirectScheduler";
+        }
+    };
+
+    private static volatile Scheduler virtual;
+
+    static Scheduler virtual() {
+        Scheduler scheduler = virtual;
+
+        if (null == scheduler) {
+            synchronized (Schedulers.class) {
+                if (null == (scheduler = virtual)) {
+                    virtual = scheduler = Scheduler.from(newVirtualThreadPerTaskExecutor());
+                }
+            }
+        }
+
+        return scheduler;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            final MethodHandle factory = MethodHandles.publicLookup().findStatic(java.util.concurrent.Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factory.invoke();
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", e);
+        } catch (final Throwable t) {
+            throw new UnsupportedOperationException("Virtual threads are not available", t);
+        }
+    }
+
+    static final class ForkJoinScheduler implements Scheduler {
+
+        final ForkJoinPool pool;
+
+        ForkJoinScheduler(final ForkJoinPool pool) {
+            if (null == pool) {
+                throw new NullPointerException("pool");
+            }
+
+            this.pool = pool;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            final Thread thread = Thread.currentThread();
+
+            if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == this.pool) {
+                ForkJoinTask.adapt(task).fork();
+            } else {
+                this.pool.execute(task);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ForkJoinScheduler[" + this.pool + "]";
+        }
+    }
+
+    private Schedulers() {
+    }
+
+}
@@ -1,17 +1,32 @@
 package com.sdklite.promise;
 
 /**
- * The state of promise
+ * The state of promise, reported to the {@link Instrumentation} once a
+ * promise is settled
  * 
  * @author johnsonlee
  *
  */
-enum State {
+public enum State {
 
+    /**
+     * Neither fulfilled nor rejected yet
+     */
     PENDING,
 
+    /**
+     * Fulfilled with a value
+     */
     FULFILLED,
 
+    /**
+     * Rejected with a reason
+     */
     REJECTED,
 
+    /**
+     * Rejected by cancellation
+     */
+    CANCELLED,
+
 }
@@ -1,4 +1,60 @@
 package com.sdklite.promise;
 
-interface Subscriber<V, R> {
+abstract class Subscriber<V, R> {
+
+    /**
+     * The subscriber registered before this one, subscribers of a pending
+     * promise are linked as a stack without any extra node
+     */
+    Subscriber<?, ?> link;
+
+    abstract Promise<?> next();
+
+    abstract void resolve(final V value);
+
+    abstract void reject(final Throwable reason);
+
+    /**
+     * Called instead of {@link #resolve(Object)} when the specified root is a
+     * primitive promise fulfilled without boxing, primitive subscribers read
+     * the value from the root directly
+     */
+    @SuppressWarnings("unchecked")
+    void resolveUnboxed(final Promise<?> root) {
+        resolve((V) root.box());
+    }
+
+    /**
+     * Called instead of {@link #reject(Throwable)} on the settling thread when
+     * the promise is cancelled, only for the subscribers without
+     * {@link #next()} promise
+     */
+    void cancel(final Throwable reason) {
+        reject(reason);
+    }
+
+    /**
+     * Returns whether the consumer of this subscriber has lost interest in the
+     * result
+     */
+    boolean isCancelled() {
+        final Promise<?> next = next();
+        return null != next && next.isCancelled();
+    }
+
+    /**
+     * Returns whether this subscriber observes the rejection, rather than just
+     * watches the settlement, a rejected promise without such subscriber is
+     * reported to the {@link UnhandledRejectionHandler}
+     */
+    boolean handlesRejection() {
+        return true;
+    }
+
+    /**
+     * Releases the references held by this subscriber once it's cancelled
+     */
+    void dispose() {
+    }
+
 }
@@ -0,0 +1,16 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a supplier of results.
+ * 
+ * @author johnsonlee
+ *
+ * @param <T>
+ *            the type of results supplied by this supplier
+ */
+@FunctionalInterface
+public interface Supplier<T> {
+
+    T get() throws Throwable;
+
+}
@@ -10,15 +10,31 @@ package com.sdklite.promise;
  */
 public interface Thenable<V> {
 
+    /**
+     * Appends a fulfillment handler, the rejection is passed through to the
+     * returned promise, and reported to the {@link UnhandledRejectionHandler}
+     * if nothing handles it in the end
+     * 
+     * @param onFulfilled
+     *            The fulfillment handler
+     * @return a new {@link Promise} resolving after the handler is called
+     */
     default Promise<V> then(final Consumer<V> onFulfilled) {
-        return this.then(onFulfilled, e -> e.printStackTrace());
+        return this.then(onFulfilled, (Consumer<Throwable>) null);
     }
 
+    /**
+     * Appends a fulfillment handler, the rejection is passed through to the
+     * returned promise, and reported to the {@link UnhandledRejectionHandler}
+     * if nothing handles it in the end
+     * 
+     * @param onFulfilled
+     *            The fulfillment handler
+     * @return a new {@link Promise} resolving to the return value of the
+     *         handler
+     */
     default <R> Promise<R> then(final Function<V, R> onFulfilled) {
-        return this.then(onFulfilled, e -> {
-            e.printStackTrace();
-            return null;
-        });
+        return this.then(onFulfilled, (Function<Throwable, R>) null);
     }
 
     Promise<V> then(final Consumer<V> onFulfilled, final Consumer<Throwable> onRejected);
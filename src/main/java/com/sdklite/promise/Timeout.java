@@ -0,0 +1,80 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The handle of a task scheduled by {@link HashedWheelTimer}
+ *
+ * @author johnsonlee
+ *
+ */
+final class Timeout {
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    final Scheduler scheduler;
+
+    /**
+     * The deadline in nanoseconds relative to the start time of the timer
+     */
+    final long deadline;
+
+    private Runnable task;
+
+    private volatile int state;
+
+    /**
+     * The remaining revolutions of the wheel, accessed by the tick thread only
+     */
+    long rounds;
+
+    Timeout next;
+    Timeout prev;
+
+    Timeout(final Scheduler scheduler, final Runnable task, final long deadline) {
+        this.scheduler = scheduler;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the task if it has not expired yet
+     *
+     * @return true if the task is cancelled by this call
+     */
+    public boolean cancel() {
+        if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+            // release the task right away, the timeout is unlinked on the next visit of its bucket
+            this.task = null;
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return CANCELLED == this.state;
+    }
+
+    /**
+     * Hands the task to its scheduler, or to the built-in pool if the
+     * scheduler rejects it, the tick thread must survive any scheduler
+     */
+    void expire() {
+        if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+            final Runnable task = this.task;
+            this.task = null;
+
+            try {
+                Internal.setTimeout(this.scheduler, task);
+            } catch (final Throwable t) {
+                MicrotaskQueue.enqueue(Internal.getPool(), task);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.sdklite.promise;
+
+/**
+ * The subscriber which forwards the settled state to the promise returned by
+ * {@link Promise#timeout(long)}, and cancels the pending timeout
+ */
+final class TimeoutSubscriber<V> extends Subscriber<V, Void> {
+
+    final Promise<V> promise;
+    final Timeout timeout;
+
+    public TimeoutSubscriber(final Promise<V> promise, final Timeout timeout) {
+        this.promise = promise;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        this.timeout.cancel();
+        this.promise._resolve(value);
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        this.timeout.cancel();
+        this.promise._reject(reason);
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.promise.isCancelled();
+    }
+
+    @Override
+    void dispose() {
+        this.timeout.cancel();
+    }
+
+}
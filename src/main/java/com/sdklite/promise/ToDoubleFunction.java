@@ -0,0 +1,16 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that produces a {@code double} result.
+ * 
+ * @author johnsonlee
+ *
+ * @param <T>
+ *            the type of the input to the function
+ */
+@FunctionalInterface
+public interface ToDoubleFunction<T> {
+
+    double applyAsDouble(final T value) throws Throwable;
+
+}
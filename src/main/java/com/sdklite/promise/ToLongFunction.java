@@ -0,0 +1,16 @@
+package com.sdklite.promise;
+
+/**
+ * Represents a function that produces a {@code long} result.
+ * 
+ * @author johnsonlee
+ *
+ * @param <T>
+ *            the type of the input to the function
+ */
+@FunctionalInterface
+public interface ToLongFunction<T> {
+
+    long applyAsLong(final T value) throws Throwable;
+
+}
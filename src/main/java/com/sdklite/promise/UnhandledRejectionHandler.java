@@ -0,0 +1,77 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The handler of the promises which are rejected without any rejection
+ * handler, a rejection is unhandled if nothing is subscribed to the rejected
+ * promise shortly after it's rejected, e.g. the last promise of a chain whose
+ * handlers don't catch the error.
+ *
+ * @author johnsonlee
+ *
+ */
+@FunctionalInterface
+public interface UnhandledRejectionHandler {
+
+    /**
+     * Installs the specified handler globally
+     *
+     * @param handler
+     *            The handler, or {@code null} to restore the default handler
+     *            which logs the rejections with {@link #logging(long, TimeUnit, boolean)}
+     */
+    static void install(final UnhandledRejectionHandler handler) {
+        Internal.setUnhandledRejectionHandler(handler);
+    }
+
+    /**
+     * Returns the installed handler
+     *
+     * @return the installed handler
+     */
+    static UnhandledRejectionHandler installed() {
+        return Internal.getUnhandledRejectionHandler();
+    }
+
+    /**
+     * Returns a handler that ignores the unhandled rejections
+     *
+     * @return the handler that does nothing
+     */
+    static UnhandledRejectionHandler ignore() {
+        return (promise, reason) -> {
+        };
+    }
+
+    /**
+     * Returns a handler which logs the unhandled rejections with
+     * {@link java.util.logging}, the first rejection of each exception type is
+     * logged immediately, the others are counted and logged as a summary at
+     * most once per interval, so that a burst of failures doesn't flood the
+     * log.
+     *
+     * @param interval
+     *            The minimum interval between summaries
+     * @param unit
+     *            The time unit of the interval
+     * @param stackTraces
+     *            Whether to log the stack trace of the first rejection of each
+     *            exception type
+     * @return the logging handler
+     */
+    static UnhandledRejectionHandler logging(final long interval, final TimeUnit unit, final boolean stackTraces) {
+        return new RejectionLogger(unit.toMillis(interval), stackTraces);
+    }
+
+    /**
+     * Called once for each unhandled rejection
+     *
+     * @param promise
+     *            The rejected promise
+     * @param reason
+     *            The rejected reason
+     */
+    void onUnhandledRejection(final Promise<?> promise, final Throwable reason);
+
+}
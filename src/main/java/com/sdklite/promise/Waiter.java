@@ -0,0 +1,73 @@
+package com.sdklite.promise;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The subscriber which wakes up a thread blocked in {@link Promise#await()},
+ * it's notified on the settling thread without going through any scheduler.
+ * A worker of a {@link ForkJoinPool} blocks through
+ * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, so the pool
+ * can start a spare worker meanwhile.
+ */
+final class Waiter<V> extends Subscriber<V, Void> implements ForkJoinPool.ManagedBlocker {
+
+    volatile Thread thread;
+
+    /**
+     * The time to park in nanoseconds, 0 means until woken up, accessed by
+     * the waiting thread only
+     */
+    long nanos;
+
+    public Waiter(final Thread thread) {
+        this.thread = thread;
+    }
+
+    @Override
+    public Promise<?> next() {
+        return null;
+    }
+
+    @Override
+    public void resolve(final V value) {
+        wake();
+    }
+
+    @Override
+    public void reject(final Throwable reason) {
+        wake();
+    }
+
+    @Override
+    boolean isCancelled() {
+        // the thread is gone once it's woken up or has given up waiting
+        return null == this.thread;
+    }
+
+    @Override
+    public boolean block() {
+        if (0L == this.nanos) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, this.nanos);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+        return null == this.thread;
+    }
+
+    private void wake() {
+        final Thread thread = this.thread;
+
+        if (null != thread) {
+            this.thread = null;
+            LockSupport.unpark(thread);
+        }
+    }
+
+}
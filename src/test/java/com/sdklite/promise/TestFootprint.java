@@ -0,0 +1,53 @@
+package com.sdklite.promise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VirtualMachine;
+
+public class TestFootprint {
+
+    static final VirtualMachine VM = org.openjdk.jol.vm.VM.current();
+
+    @Test
+    public void test_pending_promise_footprint() {
+        // header + scheduler + upstream + state
+        assertEquals(sizeOf(3), ClassLayout.parseClass(Promise.class).instanceSize());
+        assertEquals(sizeOf(3), GraphLayout.parseInstance(new Promise<Object>()).totalSize());
+    }
+
+    @Test
+    public void test_subscriber_footprint() {
+        // header + link + onFulfilled + onRejected + next + context
+        assertEquals(sizeOf(5), ClassLayout.parseClass(ConsumerSubscriber.class).instanceSize());
+        assertEquals(sizeOf(5), ClassLayout.parseClass(FunctionSubscriber.class).instanceSize());
+    }
+
+    @Test
+    public void test_pending_promise_with_subscribers_footprint() {
+        final Promise<Object> promise = new Promise<Object>();
+
+        promise.then((Consumer<Object>) null, (Consumer<Throwable>) null);
+        // the promise, the subscriber and the promise returned by then
+        assertEquals(sizeOf(3) + sizeOf(5) + sizeOf(3), GraphLayout.parseInstance(promise).totalSize());
+
+        promise.then((Consumer<Object>) null, (Consumer<Throwable>) null);
+        assertEquals(sizeOf(3) + 2 * (sizeOf(5) + sizeOf(3)), GraphLayout.parseInstance(promise).totalSize());
+    }
+
+    @Test
+    public void test_primitive_promise_footprint() {
+        // the value is stored in the promise instead of a boxed object
+        assertTrue(ClassLayout.parseClass(LongPromise.class).instanceSize() < sizeOf(3) + ClassLayout.parseClass(Long.class).instanceSize());
+    }
+
+    static long sizeOf(final int references) {
+        final long size = VM.objectHeaderSize() + references * VM.sizeOfField("oop");
+        final long alignment = VM.objectAlignment();
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+}
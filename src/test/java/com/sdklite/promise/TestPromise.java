@@ -1,10 +1,32 @@
 package com.sdklite.promise;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -120,6 +142,1060 @@ public class TestPromise {
         await(signal);
     }
 
+    @Test
+    public void test_then_with_direct_scheduler() {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+        new Promise<String>((resolve, reject) -> resolve.accept("direct"), Scheduler.direct()).then(v -> {
+            thread.set(Thread.currentThread());
+            signal.countDown();
+        });
+
+        await(signal);
+        assertSame(caller, thread.get());
+    }
+
+    @Test
+    public void test_then_with_executor_scheduler() {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<String> name = new AtomicReference<String>();
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "custom"));
+
+        try {
+            Promise.resolve(1).withScheduler(Scheduler.from(executor)).then(v -> {
+                return v + 1;
+            }).then(v -> {
+                name.set(Thread.currentThread().getName() + ":" + v);
+                signal.countDown();
+            });
+
+            await(signal);
+            assertEquals("custom:2", name.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_resolving_deep_chain() {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<Integer> result = new AtomicReference<Integer>();
+        final AtomicReference<Consumer<Integer>> trigger = new AtomicReference<Consumer<Integer>>();
+        final Promise<Integer> head = new Promise<Integer>((resolve, reject) -> trigger.set(resolve), Scheduler.direct());
+
+        Promise<Integer> tail = head;
+        for (int i = 0; i < 100000; i++) {
+            tail = tail.then(v -> {
+                return v + 1;
+            });
+        }
+
+        tail.then(v -> {
+            result.set(v);
+            signal.countDown();
+        });
+
+        try {
+            trigger.get().accept(0);
+        } catch (final Throwable t) {
+            fail(t.getLocalizedMessage());
+        }
+
+        await(signal);
+        assertEquals(Integer.valueOf(100000), result.get());
+    }
+
+    @Test
+    public void test_concurrent_then_while_resolving() throws InterruptedException {
+        final int nthreads = 8;
+        final int n = 10000;
+        final CountDownLatch signal = new CountDownLatch(nthreads * n);
+        final AtomicReference<Consumer<String>> trigger = new AtomicReference<Consumer<String>>();
+        final Promise<String> shared = new Promise<String>((resolve, reject) -> trigger.set(resolve));
+        final Thread[] threads = new Thread[nthreads];
+
+        for (int i = 0; i < nthreads; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < n; j++) {
+                    shared.then(v -> {
+                        signal.countDown();
+                    });
+                }
+            });
+            threads[i].start();
+        }
+
+        try {
+            trigger.get().accept("shared");
+        } catch (final Throwable t) {
+            fail(t.getLocalizedMessage());
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        await(signal);
+    }
+
+    @Test
+    public void test_resolving_shared_values() {
+        assertSame(Promise.resolve(), Promise.resolve((Object) null));
+        assertSame(Promise.resolve(true), Promise.resolve(Boolean.TRUE));
+        assertSame(Promise.resolve(false), Promise.resolve(Boolean.FALSE));
+        assertSame(Promise.all(), Promise.all(Collections.emptyList()));
+    }
+
+    @Test
+    public void test_then_on_settled_promise_with_direct_scheduler() {
+        final AtomicReference<Integer> result = new AtomicReference<Integer>();
+
+        Promise.resolve(1).then(v -> v + 1, (Function<Throwable, Integer>) null, Scheduler.direct()).then(v -> {
+            result.set(v);
+        });
+
+        assertEquals(Integer.valueOf(2), result.get());
+    }
+
+    @Test
+    public void test_adopting_promise_returned_by_callback() {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+
+        loop(10000).then(v -> {
+            result.set(v);
+            signal.countDown();
+        });
+
+        await(signal);
+        assertEquals("done", result.get());
+    }
+
+    @Test
+    public void test_resolving_with_pending_promise_ignores_later_calls() {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        final AtomicReference<Consumer<Object>> trigger = new AtomicReference<Consumer<Object>>();
+        final Promise<Object> inner = new Promise<Object>((resolve, reject) -> trigger.set(resolve));
+
+        new Promise<Object>((resolve, reject) -> {
+            resolve.accept(inner);
+            resolve.accept("ignored");
+        }).then(v -> {
+            result.set(v);
+            signal.countDown();
+        });
+
+        try {
+            trigger.get().accept("adopted");
+        } catch (final Throwable t) {
+            fail(t.getLocalizedMessage());
+        }
+
+        await(signal);
+        assertEquals("adopted", result.get());
+    }
+
+    @Test
+    public void test_await() throws Exception {
+        assertEquals("awaited", new Promise<String>((resolve, reject) -> resolve.accept("awaited")).await());
+        assertEquals(Integer.valueOf(2), Promise.resolve(1).then(v -> v + 1).await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_await_in_callback() throws Throwable {
+        final Promise<String> result = Promise.resolve("a").then(v -> {
+            return Promise.resolve(v).then(w -> w + "b").await(1, TimeUnit.SECONDS);
+        });
+
+        assertEquals("ab", result.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_await_rejected_promise() throws InterruptedException {
+        final TypeException reason = new TypeException("Oops!");
+
+        try {
+            new Promise<String>((resolve, reject) -> reject.accept(reason)).await();
+            fail("ExecutionException expected");
+        } catch (final ExecutionException e) {
+            assertSame(reason, e.getCause());
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void test_await_timeout() throws Exception {
+        new Promise<String>().await(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void test_timed_out_await_releases_interest() throws Exception {
+        final Promise<String> source = new Promise<String>();
+        final Promise<String> next = source.then((Function<String, String>) v -> v);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                source.await(10, TimeUnit.MILLISECONDS);
+                fail("Not timed out");
+            } catch (final TimeoutException e) {
+            }
+        }
+
+        assertTrue(next.cancel());
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void test_get_now() {
+        assertEquals("default", new Promise<String>().getNow("default"));
+        assertEquals("now", Promise.resolve("now").getNow("default"));
+    }
+
+    @Test
+    public void test_completion_stage_bridge() throws Exception {
+        final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        final Promise<Integer> promise = Promise.from(future.thenApply(v -> v * 2));
+
+        assertEquals(Integer.valueOf(42), Promise.from(CompletableFuture.completedFuture(42)).getNow(null));
+
+        future.complete(21);
+        assertEquals(Integer.valueOf(43), promise.then(v -> v + 1).toCompletableFuture().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_completion_stage_bridge_with_cancellation() throws InterruptedException {
+        final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        final Promise<Integer> promise = Promise.from(future);
+
+        future.cancel(false);
+
+        try {
+            promise.await();
+            fail("ExecutionException expected");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+    }
+
+    @Test
+    public void test_delay() throws Exception {
+        final long start = System.nanoTime();
+
+        assertNull(Promise.delay(50).await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void test_timeout() throws Exception {
+        assertEquals("fast", Promise.resolve("fast").timeout(1000).await(1, TimeUnit.SECONDS));
+        assertEquals("slow", Promise.delay(20).then(v -> "slow").timeout(1000).await(1, TimeUnit.SECONDS));
+
+        try {
+            new Promise<String>().timeout(20).await(1, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // the inline subscribers aren't run by the timer thread
+        final CompletableFuture<String> thread = new Promise<String>().timeout(20).toCompletableFuture().handle((v, e) -> Thread.currentThread().getName());
+        assertFalse("Promise#Timer".equals(thread.get(1, TimeUnit.SECONDS)));
+
+        // a scheduler rejecting the expired task doesn't stop the timer
+        final Scheduler rejecting = task -> {
+            throw new RejectedExecutionException();
+        };
+
+        try {
+            new Promise<String>(rejecting).timeout(20).await(1, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertEquals("later", Promise.delay(20).then(v -> "later").await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_cancel() throws InterruptedException {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<Boolean> hooked = new AtomicReference<Boolean>(false);
+        final Promise<String> source = new Promise<String>((resolve, reject, onCancel) -> {
+            onCancel.accept(() -> hooked.set(true));
+        });
+        final Promise<String> next = source.then(v -> {
+            return v + "!";
+        });
+
+        next.then(v -> {
+            fail("Cancelled promise fulfilled");
+        }, e -> {
+            assertTrue(e instanceof CancellationException);
+            signal.countDown();
+        });
+
+        assertTrue(next.cancel());
+        assertFalse(next.cancel());
+        assertTrue(next.isCancelled());
+        await(signal);
+
+        // all downstream subscribers of the source are cancelled
+        assertTrue(source.isCancelled());
+        assertTrue(hooked.get());
+    }
+
+    @Test
+    public void test_cancel_with_interested_subscribers() throws Throwable {
+        final AtomicReference<Consumer<String>> trigger = new AtomicReference<Consumer<String>>();
+        final Promise<String> source = new Promise<String>((resolve, reject) -> trigger.set(resolve));
+        final Promise<String> cancelled = source.then(v -> {
+            return v + "?";
+        });
+        final Promise<String> interested = source.then(v -> {
+            return v + "!";
+        });
+
+        assertTrue(cancelled.cancel());
+        assertFalse(source.isCancelled());
+
+        trigger.get().accept("source");
+        assertEquals("source!", interested.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_cancel_one_of_the_promises_adopting_a_shared_one() throws Throwable {
+        final AtomicReference<Consumer<Object>> trigger = new AtomicReference<Consumer<Object>>();
+        final Promise<Object> shared = new Promise<Object>((resolve, reject) -> trigger.set(resolve));
+        final Promise<Object> first = Promise.resolve((Object) 1).then(v -> shared, (Function<Throwable, Object>) null, Schedulers.DIRECT);
+        final Promise<Object> second = Promise.resolve((Object) 2).then(v -> shared, (Function<Throwable, Object>) null, Schedulers.DIRECT);
+        final Promise<Object> third = Promise.resolve((Object) 3).then(v -> shared, (Function<Throwable, Object>) null, Schedulers.DIRECT);
+
+        assertTrue(first.cancel());
+        assertTrue(first.isCancelled());
+        assertFalse(shared.isCancelled());
+        assertFalse(second.isCancelled());
+
+        assertTrue(third.cancel());
+        assertFalse(shared.isCancelled());
+
+        trigger.get().accept("shared");
+        assertEquals("shared", second.await(1, TimeUnit.SECONDS));
+        assertEquals("shared", shared.await(1, TimeUnit.SECONDS));
+        assertTrue(first.isCancelled());
+        assertTrue(third.isCancelled());
+    }
+
+    @Test
+    public void test_cancel_completable_future() {
+        final Promise<String> source = new Promise<String>();
+        final Promise<String> next = source.then((Consumer<String>) null, (Consumer<Throwable>) null);
+
+        next.toCompletableFuture().cancel(true);
+        assertTrue(next.isCancelled());
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void test_cancel_delay() {
+        final Promise<Object> delay = Promise.delay(60000);
+
+        assertTrue(delay.cancel());
+        assertEquals(State.CANCELLED, delay.state());
+    }
+
+    @Test
+    public void test_all_settles_inline() {
+        final Promise<Object[]> all = Promise.all(1, Promise.resolve("2"), null);
+
+        assertEquals(State.FULFILLED, all.state());
+        assertTrue(Arrays.equals(new Object[] { 1, "2", null }, all.getNow(null)));
+    }
+
+    @Test
+    public void test_combinators_reject_null_iterable() {
+        final List<Promise<?>> promises = Arrays.<Promise<?>> asList(Promise.allSettled((Iterable<?>) null), Promise.any((Iterable<?>) null), Promise.race((Iterable<?>) null));
+
+        for (final Promise<?> promise : promises) {
+            assertEquals(State.REJECTED, promise.state());
+        }
+    }
+
+    @Test
+    public void test_all_cancels_losers() throws Throwable {
+        final Promise<String> pending = new Promise<String>();
+        final Promise<String[]> all = Promise.all(String.class, Arrays.asList(pending, Promise.reject(new IllegalStateException())), true);
+
+        try {
+            all.await();
+            fail("rejection expected");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertTrue(pending.isCancelled());
+
+        // an input with other consumers is left pending
+        final Promise<String> shared = new Promise<String>();
+        final Promise<String> consumer = shared.then((Function<String, String>) v -> v);
+        final Promise<Object> race = Promise.race(Arrays.asList(shared, Promise.resolve("first")), true);
+
+        assertEquals("first", race.await(1, TimeUnit.SECONDS));
+        assertFalse(shared.isCancelled());
+        assertFalse(consumer.isCancelled());
+    }
+
+    @Test
+    public void test_all_settled() throws Throwable {
+        final Promise<Outcome<Object>[]> all = Promise.allSettled(Promise.delay(10), Promise.reject(new IllegalStateException()), "value");
+        final Outcome<Object>[] outcomes = all.await(1, TimeUnit.SECONDS);
+
+        assertTrue(outcomes[0].isFulfilled());
+        assertTrue(outcomes[1].getReason() instanceof IllegalStateException);
+        assertEquals("value", outcomes[2].getValue());
+    }
+
+    @Test
+    public void test_any_and_race() throws Throwable {
+        final Promise<Object> slow = Promise.delay(60000);
+
+        assertEquals("fast", Promise.any(Arrays.asList(Promise.reject(new IllegalStateException()), slow, "fast"), true).await());
+        assertTrue(slow.isCancelled());
+        assertEquals(2, Promise.race(Promise.delay(60000), 2).await(1, TimeUnit.SECONDS));
+
+        try {
+            Promise.any(Promise.reject(new IllegalStateException()), Promise.reject(new IllegalArgumentException())).await();
+            fail("rejection expected");
+        } catch (final ExecutionException e) {
+            assertEquals(2, ((AggregateException) e.getCause()).getErrors().size());
+        }
+    }
+
+    @Test
+    public void test_map_with_bounded_concurrency() throws Throwable {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final Promise<List<Integer>> results = Promise.map(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), v -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            return Promise.delay(5).then(x -> {
+                active.decrementAndGet();
+                return v * v;
+            });
+        }, 3);
+
+        assertEquals(Arrays.asList(1, 4, 9, 16, 25, 36, 49, 64), results.await(1, TimeUnit.SECONDS));
+        assertTrue(peak.get() <= 3);
+    }
+
+    @Test
+    public void test_each_over_a_lazy_iterable() throws Throwable {
+        final AtomicLong sum = new AtomicLong();
+        final Iterable<Integer> range = () -> IntStream.range(0, 100000).iterator();
+
+        Promise.each(range, v -> Promise.resolve(sum.addAndGet(v)), 16).await();
+        assertEquals(4999950000L, sum.get());
+    }
+
+    @Test
+    public void test_stream_in_completion_order() throws Throwable {
+        final List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+        final AtomicReference<Consumer<Object>> trigger = new AtomicReference<Consumer<Object>>();
+        final Promise<Object> start = new Promise<Object>((resolve, reject) -> trigger.set(resolve));
+        final Promise<Object> slow = start.then((Function<Object, Thenable<Object>>) v -> Promise.delay(50)).then(v -> "slow");
+        final Promise<Object> fast = start.then((Function<Object, Thenable<Object>>) v -> Promise.delay(5)).then(v -> "fast");
+
+        // the inputs can't settle before the stream subscribes to them
+        final Promise<Void> done = Promise.stream(Arrays.asList(slow, fast, "now"), values::add);
+        trigger.get().accept(null);
+        done.await(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("now", "fast", "slow"), values);
+    }
+
+    @Test
+    public void test_stream_with_demand() throws Throwable {
+        final List<Object> values = new ArrayList<Object>();
+        final Completions<Object> stream = Promise.stream(Arrays.asList(1, 2, 3));
+        final Promise<Void> done = stream.forEach(values::add, 1);
+
+        assertEquals(Arrays.asList(1), values);
+        assertEquals(State.PENDING, done.state());
+
+        stream.request(2);
+        assertEquals(Arrays.asList(1, 2, 3), values);
+        assertEquals(State.FULFILLED, done.state());
+    }
+
+    @Test
+    public void test_primitive_promises() throws Throwable {
+        final IntPromise source = new IntPromise((resolve, reject) -> resolve.accept(20));
+        final Promise<String> result = source.map(v -> v * 2).thenAccept(v -> assertEquals(40, v)).mapToObj(v -> "#" + v);
+
+        assertEquals("#40", result.await(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(20), source.await());
+        assertEquals(20, source.getAsInt(0));
+        assertEquals(3L, LongPromise.from(Promise.resolve("abc"), String::length).await(1, TimeUnit.SECONDS).longValue());
+        assertEquals(10, IntPromise.from(IntPromise.resolve(5), v -> v * 2).await(1, TimeUnit.SECONDS).intValue());
+        assertEquals(14, IntPromise.from(LongPromise.resolve(7L), v -> (int) (v * 2)).await(1, TimeUnit.SECONDS).intValue());
+        assertEquals(1.5, DoublePromise.from(IntPromise.resolve(3), v -> v / 2.0).await(1, TimeUnit.SECONDS), 0);
+    }
+
+    @Test
+    public void test_all_primitive_promises() throws Throwable {
+        final LongPromise pending = new LongPromise();
+        final Promise<long[]> all = LongPromise.all(LongPromise.resolve(1L), pending, LongPromise.resolve(3L));
+
+        pending.complete(2L);
+        assertTrue(Arrays.equals(new long[] { 1L, 2L, 3L }, all.await(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void test_adopted_primitive_promise() throws Throwable {
+        final IntPromise pending = new IntPromise();
+        final Promise<Object> adopter = Promise.resolve((Object) 1).then(v -> pending, (Function<Throwable, Object>) null, Schedulers.DIRECT);
+
+        pending.complete(42);
+        assertEquals(42, adopter.await(1, TimeUnit.SECONDS));
+        assertEquals(42, pending.getAsInt(0));
+
+        // the value delivered by the first producer is never overwritten
+        for (int i = 0; i < 1000; i++) {
+            final AtomicReference<IntConsumer> resolve = new AtomicReference<IntConsumer>();
+            final IntPromise raced = new IntPromise((accept, reject) -> resolve.set(accept));
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            final Thread other = new Thread(() -> {
+                try {
+                    barrier.await();
+                    resolve.get().accept(2);
+                } catch (final Throwable e) {
+                    fail(e.getLocalizedMessage());
+                }
+            });
+            other.start();
+            barrier.await();
+            resolve.get().accept(1);
+            other.join();
+
+            final int delivered = raced.map(v -> v).await(1, TimeUnit.SECONDS);
+            assertEquals(delivered, raced.getAsInt(0));
+        }
+    }
+
+    @Test
+    public void test_instrumentation() throws Throwable {
+        final PromiseMetrics metrics = new PromiseMetrics();
+        Instrumentation.install(metrics);
+
+        try {
+            final Promise<Object> pending = new Promise<Object>();
+
+            assertEquals(1, metrics.getPending());
+            assertTrue(pending.cancel());
+            Promise.resolve("value").then(v -> {
+                return v;
+            }).await();
+
+            assertEquals(3, metrics.getCreated());
+            assertEquals(1, metrics.getCancelled());
+            assertEquals(2, metrics.getFulfilled());
+            assertEquals(0, metrics.getPending());
+
+            // the callback is timed after it has settled the awaited promise
+            for (long deadline = System.currentTimeMillis() + 1000; 0 == metrics.getCallbacks() && System.currentTimeMillis() < deadline;) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, metrics.getCallbacks());
+        } finally {
+            Instrumentation.install(null);
+        }
+    }
+
+    @Test
+    public void test_unhandled_rejection() throws Throwable {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final AtomicReference<Throwable> unhandled = new AtomicReference<Throwable>();
+        final AtomicReference<Throwable> cancelled = new AtomicReference<Throwable>();
+        final CountDownLatch storm = new CountDownLatch(1000);
+        UnhandledRejectionHandler.install((promise, reason) -> {
+            if (reason instanceof CancellationException) {
+                cancelled.set(reason);
+            }
+
+            if ("storm".equals(reason.getMessage())) {
+                storm.countDown();
+            }
+
+            // ignore the rejections left behind by other tests
+            if ("value".equals(reason.getMessage())) {
+                unhandled.set(reason);
+                signal.countDown();
+            }
+        });
+
+        try {
+            final Promise<Object> handled = Promise.reject(new IllegalStateException());
+            handled.then(v -> {
+            }, e -> {
+            });
+
+            // the cancellation reaches the downstream as a rejection
+            final Promise<Object> source = new Promise<Object>();
+            source.then((Function<Object, Object>) v -> v);
+            source.cancel();
+
+            Promise.resolve("value").then((Function<String, String>) v -> {
+                throw new IllegalArgumentException(v);
+            }).then(v -> {
+                return v;
+            });
+
+            assertTrue(signal.await(1, TimeUnit.SECONDS));
+            assertTrue(unhandled.get() instanceof IllegalArgumentException);
+            assertNull(cancelled.get());
+
+            // a burst of rejections is reported in full by a single timeout
+            for (int i = 0; i < 1000; i++) {
+                new Promise<Object>((resolve, reject) -> reject.accept(new IllegalStateException("storm")));
+            }
+            assertTrue(storm.await(1, TimeUnit.SECONDS));
+        } finally {
+            UnhandledRejectionHandler.install(null);
+        }
+    }
+
+    @Test
+    public void test_leak_detector() throws Throwable {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final List<LeakDetector.Leak> leaks = Collections.synchronizedList(new ArrayList<LeakDetector.Leak>());
+        final LeakDetector detector = LeakDetector.install(1, 20, TimeUnit.MILLISECONDS, true, leak -> {
+            leaks.add(leak);
+            signal.countDown();
+        });
+
+        try {
+            final Promise<Object> forgotten = new Promise<Object>((resolve, reject) -> {
+            });
+            new Promise<Object>((resolve, reject) -> resolve.accept("settled"));
+
+            assertTrue(detector.getTracked() >= 1);
+            assertTrue(signal.await(1, TimeUnit.SECONDS));
+            assertFalse(leaks.get(0).isCollected());
+            assertTrue(null != leaks.get(0).getCreationSite());
+            assertEquals(State.PENDING, forgotten.state());
+        } finally {
+            LeakDetector.uninstall();
+        }
+    }
+
+    @Test
+    public void test_promise_cache() throws Throwable {
+        final AtomicInteger loads = new AtomicInteger();
+        final PromiseCache<String, String> cache = PromiseCache.<String, String> builder()
+                .maximumSize(2)
+                .build(key -> {
+                    if (1 == loads.incrementAndGet()) {
+                        return Promise.reject(new IllegalStateException(key));
+                    }
+                    return Promise.<String> delay(10).then((Function<String, String>) v -> key.toUpperCase());
+                });
+
+        final CountDownLatch rejected = new CountDownLatch(1);
+        cache.get("a").then(v -> {
+        }, e -> rejected.countDown());
+        assertTrue(rejected.await(1, TimeUnit.SECONDS));
+
+        final Promise<String> first = cache.get("a");
+        final Promise<String> second = cache.get("a");
+        assertTrue(first.cancel());
+        assertEquals("A", second.await());
+        assertEquals(2, loads.get());
+
+        // the load is cancelled once all of the callers have cancelled
+        assertTrue(cache.get("d").cancel());
+        assertEquals("D", cache.get("d").await());
+        assertEquals(4, loads.get());
+
+        cache.get("b").await();
+        cache.get("c").await();
+        assertTrue(cache.size() <= 2);
+
+        // the least recently used entries are evicted
+        final PromiseCache<Integer, Integer> lru = PromiseCache.<Integer, Integer> builder().maximumSize(100).build(key -> Promise.resolve(key));
+        for (int i = 0; i < 100; i++) {
+            lru.put(i, i);
+        }
+
+        Thread.sleep(2);
+        for (int i = 0; i < 50; i++) {
+            lru.get(i);
+        }
+
+        for (int i = 100; i < 150; i++) {
+            lru.put(i, i);
+        }
+
+        assertEquals(100, lru.size());
+        for (int i = 0; i < 150; i++) {
+            assertEquals("key " + i, i < 50 || i >= 100, null != lru.getIfPresent(i));
+        }
+    }
+
+    @Test
+    public void test_promise_cache_expire_and_refresh() throws Throwable {
+        final AtomicInteger loads = new AtomicInteger();
+        final PromiseCache<String, Integer> expiring = PromiseCache.<String, Integer> builder()
+                .expireAfterWrite(50, TimeUnit.MILLISECONDS)
+                .build(key -> Promise.resolve(loads.incrementAndGet()));
+
+        assertEquals(Integer.valueOf(1), expiring.get("a").await(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), expiring.get("a").await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertNull(expiring.getIfPresent("a"));
+        assertEquals(Integer.valueOf(2), expiring.get("a").await(1, TimeUnit.SECONDS));
+
+        final AtomicInteger reloads = new AtomicInteger();
+        final PromiseCache<String, Integer> refreshing = PromiseCache.<String, Integer> builder()
+                .refreshAfterWrite(50, TimeUnit.MILLISECONDS)
+                .build(key -> Promise.resolve(reloads.incrementAndGet()));
+
+        assertEquals(Integer.valueOf(1), refreshing.get("a").await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        // the stale value is served while the new one is loaded
+        assertEquals(Integer.valueOf(1), refreshing.get("a").await(1, TimeUnit.SECONDS));
+        for (long deadline = System.currentTimeMillis() + 1000; 1 == refreshing.getIfPresent("a").await() && System.currentTimeMillis() < deadline;) {
+            Thread.sleep(5);
+        }
+        assertEquals(Integer.valueOf(2), refreshing.getIfPresent("a").await(1, TimeUnit.SECONDS));
+        assertEquals(2, reloads.get());
+    }
+
+    @Test
+    public void test_batch_loader() throws Throwable {
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        final BatchLoader<Integer, String> loader = BatchLoader.<Integer, String> builder()
+                .maxBatchSize(3)
+                .build(keys -> {
+                    final Map<Integer, String> values = new HashMap<Integer, String>();
+                    for (final Integer key : keys) {
+                        values.put(key, "#" + key);
+                    }
+                    batches.add(keys);
+                    return Promise.resolve(values);
+                });
+
+        final AtomicReference<Promise<List<String>>> result = new AtomicReference<Promise<List<String>>>();
+        Promise.resolve().then((Consumer<Object>) v -> result.set(loader.loadMany(Arrays.asList(1, 2, 1, 3, 4)))).await();
+
+        assertEquals(Arrays.asList("#1", "#2", "#1", "#3", "#4"), result.get().await());
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4)), batches);
+
+        // the callers of the same key can't cancel it for each other
+        final Promise<String> cancelled = loader.load(5);
+        final Promise<String> other = loader.load(5);
+        assertTrue(cancelled.cancel());
+        assertEquals("#5", other.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_batch_loader_on_plain_thread() throws Throwable {
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        final BatchLoader<Integer, Integer> loader = BatchLoader.<Integer, Integer> builder().build(keys -> {
+            final Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+            for (final Integer key : keys) {
+                values.put(key, key * key);
+            }
+            batches.add(keys);
+            return Promise.resolve(values);
+        });
+
+        // the loads aren't issued by a callback, so there's no drain to wait for
+        for (int round = 0; round < 5; round++) {
+            final List<Promise<Integer>> squares = new ArrayList<Promise<Integer>>();
+            for (int i = 0; i < 100; i++) {
+                squares.add(loader.load(round * 100 + i));
+            }
+
+            assertEquals(Integer.valueOf((round * 100 + 99) * (round * 100 + 99)), squares.get(99).await(1, TimeUnit.SECONDS));
+        }
+
+        assertEquals(5, batches.size());
+        for (final List<Integer> batch : batches) {
+            assertEquals(100, batch.size());
+        }
+    }
+
+    @Test
+    public void test_hedge() throws Throwable {
+        final List<Promise<String>> attempts = Collections.synchronizedList(new ArrayList<Promise<String>>());
+        final Hedger hedger = Hedger.builder().delay(20, TimeUnit.MILLISECONDS).maxAttempts(3).build();
+        final Promise<String> promise = hedger.execute(() -> {
+            final Promise<String> attempt = attempts.isEmpty() ? new Promise<String>((resolve, reject) -> {
+            }) : Promise.resolve("hedged");
+            attempts.add(attempt);
+            return attempt;
+        });
+
+        assertEquals("hedged", promise.await(1, TimeUnit.SECONDS));
+        assertEquals(2, attempts.size());
+        assertTrue(attempts.get(0).isCancelled());
+        assertEquals(1, hedger.getHedges());
+        assertEquals(1, hedger.getHedgeWins());
+    }
+
+    @Test
+    public void test_hedge_percentile_and_budget() throws Throwable {
+        final Hedger adaptive = Hedger.builder().delay(10, TimeUnit.MILLISECONDS).percentile(0.5).build();
+        final List<Promise<String>> results = new ArrayList<Promise<String>>();
+
+        for (int i = 0; i < 256; i++) {
+            final AtomicInteger calls = new AtomicInteger();
+            results.add(adaptive.execute(() -> {
+                return 0 == calls.getAndIncrement() ? Promise.<String>delay(200).then((Function<String, String>) v -> "slow") : Promise.resolve("fast");
+            }));
+        }
+
+        for (final Promise<String> result : results) {
+            assertEquals("fast", result.await(1, TimeUnit.SECONDS));
+        }
+
+        // the slow attempts are cancelled, but the executions still took the delay
+        assertTrue(adaptive.getDelay(TimeUnit.MILLISECONDS) >= 5);
+
+        final Hedger bounded = Hedger.builder().maxAttempts(3).budget(0).build();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            bounded.execute(() -> {
+                attempts.incrementAndGet();
+                return Promise.<String>reject(new IllegalStateException("attempt"));
+            }).await(1, TimeUnit.SECONDS);
+            fail("Rejected attempt retried");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, bounded.getHedges());
+    }
+
+    @Test
+    public void test_context() throws Throwable {
+        final Context.Key<String> trace = Context.key("trace");
+        final Promise<Object> traced = Context.current().with(trace, "t1").call(() -> {
+            return Promise.delay(10).then((Function<Object, Object>) v -> Context.current().get(trace));
+        });
+
+        assertEquals("t1", traced.await());
+        assertNull(Context.current().get(trace));
+
+        final AtomicInteger called = new AtomicInteger();
+        final Promise<Object> expired = Context.current().withTimeout(10, TimeUnit.MILLISECONDS).call(() -> {
+            return Promise.delay(50).then((Function<Object, Object>) v -> called.incrementAndGet());
+        });
+
+        try {
+            expired.await();
+            fail("Deadline not exceeded");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertEquals(0, called.get());
+    }
+
+    @Test
+    public void test_blocking() throws Throwable {
+        final BlockingScheduler blocking = BlockingScheduler.builder().maxThreads(1).queueCapacity(1).build();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<String> thread = new AtomicReference<String>();
+
+        try {
+            final Promise<String> first = Promise.supplyBlocking(() -> {
+                release.await();
+                return Thread.currentThread().getName();
+            }, blocking);
+            final Promise<String> queued = Promise.supplyBlocking(() -> "queued", blocking);
+            final Promise<String> rejected = Promise.supplyBlocking(() -> "rejected", blocking);
+
+            try {
+                rejected.await();
+                fail("Not rejected");
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            assertEquals(1, blocking.getRejectedCount());
+            assertEquals(1.0, blocking.getSaturation(), 0.0);
+            release.countDown();
+
+            assertTrue(first.await().startsWith("Promise#Blocking-"));
+            assertEquals("queued", queued.await());
+
+            final Promise<Integer> length = first.thenBlocking(name -> name.length(), blocking).then((Function<Integer, Integer>) n -> {
+                thread.set(Thread.currentThread().getName());
+                return n;
+            });
+
+            assertEquals(Integer.valueOf(first.await().length()), length.await());
+            assertFalse(thread.get().startsWith("Promise#Blocking-"));
+        } finally {
+            blocking.shutdown();
+        }
+
+        // the work submitted from the pool is queued rather than run in place
+        final BlockingScheduler pool = BlockingScheduler.builder().maxThreads(3).build();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        try {
+            final Promise<Boolean> nested = Promise.supplyBlocking(() -> {
+                final Promise<Boolean> waiting = Promise.supplyBlocking(() -> started.await(1, TimeUnit.SECONDS), pool);
+                Promise.supplyBlocking(() -> {
+                    started.countDown();
+                    return null;
+                }, pool);
+                return waiting.await();
+            }, pool);
+
+            assertTrue(nested.await(2, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+
+        // the thread settling the upstream never runs the work of thenBlocking
+        final BlockingScheduler saturated = BlockingScheduler.builder().maxThreads(1).queueCapacity(1)
+                .rejectionPolicy(BlockingScheduler.RejectionPolicy.CALLER_RUNS).build();
+        final CountDownLatch unblock = new CountDownLatch(1);
+
+        try {
+            Promise.supplyBlocking(() -> unblock.await(1, TimeUnit.SECONDS), saturated);
+            Promise.supplyBlocking(() -> "queued", saturated);
+
+            try {
+                Promise.resolve("upstream").thenBlocking(v -> v, saturated).await(1, TimeUnit.SECONDS);
+                fail("Not rejected");
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            // nor does a callback running on the pool, it would starve the
+            // continuations, while any other caller runs the work in place
+            try {
+                Promise.resolve("callback").then((Function<String, Thenable<String>>) v -> {
+                    return Promise.supplyBlocking(() -> Thread.currentThread().getName(), saturated);
+                }).await(1, TimeUnit.SECONDS);
+                fail("Not rejected");
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            assertEquals(Thread.currentThread().getName(), Promise.supplyBlocking(() -> Thread.currentThread().getName(), saturated).await(1, TimeUnit.SECONDS));
+        } finally {
+            unblock.countDown();
+            saturated.shutdown();
+        }
+    }
+
+    @Test
+    public void test_priority() throws Throwable {
+        final long dispatched = Priority.CRITICAL.getDispatched();
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        final Promise<Integer> critical = new Promise<Integer>((resolve, reject) -> resolve.accept(1), Priority.CRITICAL.scheduler())
+                .then((Function<Integer, Integer>) v -> v + 1)
+                .then((Function<Integer, Integer>) v -> {
+                    thread.set(Thread.currentThread().getName());
+                    return v + 1;
+                });
+        final Promise<Object> bulk = Promise.resolve((Object) "bulk").withPriority(Priority.BULK);
+
+        assertEquals(Integer.valueOf(3), critical.await());
+        assertEquals("bulk", bulk.then((Function<Object, Object>) v -> v).await());
+        assertTrue(thread.get().startsWith("Promise#"));
+        assertTrue(Priority.CRITICAL.getDispatched() > dispatched);
+        assertTrue(Priority.BULK.getWaitTime(0.99, TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void test_priority_under_bulk_backlog() throws Throwable {
+        final int nthreads = Runtime.getRuntime().availableProcessors();
+        final AtomicInteger sequence = new AtomicInteger();
+        final List<Integer> bulk = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> critical = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Promise<Object>> promises = new ArrayList<Promise<Object>>();
+
+        // fill the bulk lane before any critical work arrives
+        for (int i = 0; i < 400 * nthreads; i++) {
+            promises.add(Promise.resolve((Object) i).withPriority(Priority.BULK).then((Function<Object, Object>) v -> {
+                spin(500000L);
+                bulk.add(sequence.getAndIncrement());
+                return v;
+            }));
+        }
+
+        final long start = System.nanoTime();
+        final AtomicLong firstWait = new AtomicLong(Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            promises.add(Promise.resolve((Object) i).withPriority(Priority.CRITICAL).then((Function<Object, Object>) v -> {
+                firstWait.compareAndSet(Long.MAX_VALUE, System.nanoTime() - start);
+                spin(500000L);
+                critical.add(sequence.getAndIncrement());
+                return v;
+            }));
+        }
+
+        Promise.all(promises).await(10, TimeUnit.SECONDS);
+
+        // the critical work overtakes the bulk backlog ...
+        final int first = critical.get(0);
+        final int last = critical.get(critical.size() - 1);
+        assertTrue(last < bulk.get(bulk.size() - 1));
+        assertTrue(firstWait.get() < TimeUnit.MILLISECONDS.toNanos(50));
+
+        // ... without starving it, the bulk lane keeps its share of 1 in 21
+        int shared = 0;
+        for (final int seq : bulk) {
+            if (seq > first && seq < last) {
+                shared++;
+            }
+        }
+        assertTrue("bulk got " + shared + " of " + (last - first), shared >= (last - first) / 21 - nthreads);
+        assertTrue("bulk got " + shared + " of " + (last - first), shared < (last - first) / 4);
+
+        // a bulk chain gives its worker back after a short run of continuations
+        final CountDownLatch started = new CountDownLatch(nthreads);
+        final List<Promise<Object>> chains = new ArrayList<Promise<Object>>();
+        for (int i = 0; i < nthreads; i++) {
+            Promise<Object> chain = Promise.resolve((Object) 0).withPriority(Priority.BULK).then((Function<Object, Object>) v -> {
+                started.countDown();
+                return v;
+            });
+            for (int j = 0; j < 2000; j++) {
+                chain = chain.then((Function<Object, Object>) v -> {
+                    spin(50000L);
+                    return v;
+                });
+            }
+            chains.add(chain);
+        }
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        final long submitted = System.nanoTime();
+        final long wait = Promise.resolve((Object) 0).withPriority(Priority.CRITICAL).then((Function<Object, Long>) v -> System.nanoTime() - submitted).await(1, TimeUnit.SECONDS);
+        assertTrue("critical waited " + wait + "ns", wait < TimeUnit.MILLISECONDS.toNanos(25));
+        Promise.all(chains).await(10, TimeUnit.SECONDS);
+    }
+
+    static void spin(final long nanos) {
+        for (final long deadline = System.nanoTime() + nanos; System.nanoTime() < deadline;) {
+        }
+    }
+
+    static Promise<Object> loop(final int n) {
+        return Promise.resolve(n).then(v -> {
+            return 0 == v ? "done" : loop(v - 1);
+        });
+    }
+
     static void await(final CountDownLatch signal) {
         try {
             signal.await();